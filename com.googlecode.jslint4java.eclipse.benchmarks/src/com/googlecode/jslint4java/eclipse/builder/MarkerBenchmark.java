@@ -0,0 +1,157 @@
+package com.googlecode.jslint4java.eclipse.builder;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceRunnable;
+import org.eclipse.core.resources.IncrementalProjectBuilder;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.equinox.app.IApplication;
+import org.eclipse.equinox.app.IApplicationContext;
+
+import com.googlecode.jslint4java.Issue;
+import com.googlecode.jslint4java.eclipse.builder.LintExecutor.FileResult;
+
+/**
+ * Compare writing markers one attribute at a time (as the builder used to) against updating them
+ * a chunk of files at a time with {@link MarkerReconciler}. Both are done by building with the
+ * {@link MarkerBenchmarkBuilder}, as notifications are batched differently inside a build. Run
+ * it headless against a scratch workspace, with this fragment installed:
+ *
+ * <pre>
+ * eclipse -nosplash -application com.googlecode.jslint4java.eclipse.markerBenchmark \
+ *     -data /tmp/scratch [-files 5000] [-issues 10] [-chunk 100]
+ * </pre>
+ *
+ * A synthetic project is created, and the wall time and number of resource change notifications
+ * for each approach are printed on stdout. The project is deleted afterwards.
+ */
+public class MarkerBenchmark implements IApplication {
+
+    private static final String PROJECT_NAME = "jslint4java-marker-benchmark";
+
+    private static final int FILES_PER_FOLDER = 100;
+
+    /** Counts POST_CHANGE notifications, and the JSLint marker deltas within them. */
+    private static class NotificationCounter implements IResourceChangeListener {
+        private final AtomicInteger events = new AtomicInteger();
+        private final AtomicInteger markerDeltas = new AtomicInteger();
+
+        public void resourceChanged(IResourceChangeEvent event) {
+            events.incrementAndGet();
+            markerDeltas.addAndGet(event.findMarkerDeltas(JSLintBuilder.MARKER_TYPE, false).length);
+        }
+    }
+
+    public Object start(IApplicationContext context) throws Exception {
+        String[] args = (String[]) context.getArguments().get(
+                IApplicationContext.APPLICATION_ARGS);
+        int fileCount = intArg(args, "-files", 5000);
+        int issueCount = intArg(args, "-issues", 10);
+        int chunkSize = intArg(args, "-chunk", 100);
+
+        IWorkspace workspace = ResourcesPlugin.getWorkspace();
+        IProject project = workspace.getRoot().getProject(PROJECT_NAME);
+        try {
+            MarkerBenchmarkBuilder.results = createProject(project, fileCount, issueCount);
+            measure(workspace, project, "per marker", 0);
+            measure(workspace, project, "chunks of " + chunkSize, chunkSize);
+        } finally {
+            MarkerBenchmarkBuilder.results = null;
+            project.delete(true, true, null);
+        }
+        return EXIT_OK;
+    }
+
+    public void stop() {
+    }
+
+    /**
+     * Build {@code project}, which has no markers, applying them {@code chunkSize} files at a
+     * time, and print what it cost.
+     */
+    private void measure(IWorkspace workspace, IProject project, String name, int chunkSize)
+            throws CoreException {
+        project.deleteMarkers(JSLintBuilder.MARKER_TYPE, false, IResource.DEPTH_INFINITE);
+        flushNotifications(workspace);
+
+        NotificationCounter counter = new NotificationCounter();
+        workspace.addResourceChangeListener(counter, IResourceChangeEvent.POST_CHANGE);
+        try {
+            Map<String, String> args = new HashMap<String, String>();
+            args.put(MarkerBenchmarkBuilder.CHUNK_ARG, Integer.toString(chunkSize));
+            long start = System.nanoTime();
+            project.build(IncrementalProjectBuilder.FULL_BUILD,
+                    MarkerBenchmarkBuilder.BUILDER_ID, args, null);
+            flushNotifications(workspace);
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("%-16s %8d ms %8d notifications %8d marker deltas%n", name,
+                    elapsed / 1000000, counter.events.get(), counter.markerDeltas.get());
+        } finally {
+            workspace.removeResourceChangeListener(counter);
+        }
+    }
+
+    /** Make sure any deferred notifications have been sent before we carry on. */
+    private void flushNotifications(IWorkspace workspace) throws CoreException {
+        workspace.run(new IWorkspaceRunnable() {
+            public void run(IProgressMonitor monitor) {
+            }
+        }, workspace.getRoot(), 0, null);
+    }
+
+    /** Create a project full of small files, and some made up issues for each of them. */
+    private List<FileResult> createProject(final IProject project, final int fileCount,
+            final int issueCount) throws CoreException {
+        final List<FileResult> results = new ArrayList<FileResult>(fileCount);
+        ResourcesPlugin.getWorkspace().run(new IWorkspaceRunnable() {
+            public void run(IProgressMonitor monitor) throws CoreException {
+                if (project.exists()) {
+                    project.delete(true, true, null);
+                }
+                project.create(null);
+                project.open(null);
+                IFolder folder = null;
+                for (int i = 0; i < fileCount; i++) {
+                    if (i % FILES_PER_FOLDER == 0) {
+                        folder = project.getFolder("dir" + i / FILES_PER_FOLDER);
+                        folder.create(true, true, null);
+                    }
+                    IFile file = folder.getFile("file" + i + ".js");
+                    file.create(new ByteArrayInputStream("var a = 1;\n".getBytes()), true, null);
+                    List<Issue> issues = new ArrayList<Issue>(issueCount);
+                    for (int j = 0; j < issueCount; j++) {
+                        issues.add(new Issue.IssueBuilder(file.getFullPath().toString(), j + 1, 1,
+                                "Synthetic issue " + j).build());
+                    }
+                    results.add(new FileResult(file, issues));
+                }
+            }
+        }, null);
+        return results;
+    }
+
+    private int intArg(String[] args, String name, int defaultValue) {
+        if (args != null) {
+            for (int i = 0; i < args.length - 1; i++) {
+                if (args[i].equals(name)) {
+                    return Integer.parseInt(args[i + 1]);
+                }
+            }
+        }
+        return defaultValue;
+    }
+}
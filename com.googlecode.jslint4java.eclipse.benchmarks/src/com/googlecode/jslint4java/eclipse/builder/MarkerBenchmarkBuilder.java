@@ -0,0 +1,75 @@
+package com.googlecode.jslint4java.eclipse.builder;
+
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IncrementalProjectBuilder;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+
+import com.googlecode.jslint4java.Issue;
+import com.googlecode.jslint4java.eclipse.JSLintPlugin;
+import com.googlecode.jslint4java.eclipse.builder.LintExecutor.FileResult;
+
+/**
+ * Applies the markers handed to it by {@link MarkerBenchmark} from inside a build, holding the
+ * same rule as {@link JSLintBuilder}, so that notifications are batched as they are for the real
+ * thing. Nothing is linted.
+ */
+public class MarkerBenchmarkBuilder extends IncrementalProjectBuilder {
+
+    // NB! Must match fragment.xml declaration.
+    public static final String BUILDER_ID = JSLintPlugin.PLUGIN_ID + ".markerBenchmarkBuilder";
+
+    /**
+     * A build argument: how many files' markers to update in each workspace operation, or 0 to
+     * write them one attribute at a time, as the builder used to.
+     */
+    static final String CHUNK_ARG = "chunk";
+
+    /** What the next build should apply. */
+    static volatile List<FileResult> results;
+
+    private final MarkerReconciler reconciler = new MarkerReconciler(JSLintBuilder.MARKER_TYPE);
+
+    @Override
+    protected IProject[] build(int kind, @SuppressWarnings("rawtypes") Map args,
+            IProgressMonitor monitor) throws CoreException {
+        int chunkSize = Integer.parseInt((String) args.get(CHUNK_ARG));
+        if (chunkSize == 0) {
+            applyPerMarker(results);
+        } else {
+            for (int i = 0; i < results.size(); i += chunkSize) {
+                List<FileResult> chunk = results.subList(i, Math.min(i + chunkSize,
+                        results.size()));
+                reconciler.reconcile(getProject().getWorkspace(), chunk, null);
+            }
+        }
+        return null;
+    }
+
+    /** Like {@link JSLintBuilder}, only our own project. */
+    @Override
+    public ISchedulingRule getRule(int kind, Map<String, String> args) {
+        return getProject();
+    }
+
+    private void applyPerMarker(List<FileResult> results) throws CoreException {
+        for (FileResult result : results) {
+            IFile file = result.getFile();
+            file.deleteMarkers(JSLintBuilder.MARKER_TYPE, false, IResource.DEPTH_ZERO);
+            for (Issue issue : result.getIssues()) {
+                IMarker m = file.createMarker(JSLintBuilder.MARKER_TYPE);
+                m.setAttribute(IMarker.MESSAGE, issue.getReason());
+                m.setAttribute(IMarker.SEVERITY, IMarker.SEVERITY_WARNING);
+                m.setAttribute(IMarker.LINE_NUMBER, issue.getLine());
+                m.setAttribute(IMarker.SOURCE_ID, "jslint4java");
+            }
+        }
+    }
+}
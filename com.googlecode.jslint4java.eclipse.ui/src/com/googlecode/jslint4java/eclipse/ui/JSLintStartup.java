@@ -0,0 +1,23 @@
+package com.googlecode.jslint4java.eclipse.ui;
+
+import org.eclipse.ui.IStartup;
+import org.eclipse.ui.IWorkbench;
+import org.eclipse.ui.PlatformUI;
+
+/**
+ * Start linting open editors as you type once the workbench is up.
+ */
+public class JSLintStartup implements IStartup {
+
+    public void earlyStartup() {
+        final IWorkbench workbench = PlatformUI.getWorkbench();
+        workbench.getDisplay().asyncExec(new Runnable() {
+            public void run() {
+                JSLintUIPlugin plugin = JSLintUIPlugin.getDefault();
+                if (plugin != null && !workbench.isClosing()) {
+                    plugin.getAsYouTypeLinter().install(workbench);
+                }
+            }
+        });
+    }
+}
@@ -1,5 +1,7 @@
 package com.googlecode.jslint4java.eclipse.ui;
 
+import org.eclipse.core.runtime.preferences.DefaultScope;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
 import org.eclipse.core.runtime.preferences.InstanceScope;
 import org.eclipse.jface.preference.IPreferenceStore;
 import org.eclipse.ui.plugin.AbstractUIPlugin;
@@ -7,6 +9,7 @@ import org.eclipse.ui.preferences.ScopedPreferenceStore;
 import org.osgi.framework.BundleContext;
 
 import com.googlecode.jslint4java.eclipse.JSLintPlugin;
+import com.googlecode.jslint4java.eclipse.ui.editor.AsYouTypeLinter;
 
 /**
  * The activator class controls the plug-in life cycle
@@ -19,8 +22,13 @@ public class JSLintUIPlugin extends AbstractUIPlugin {
     // The shared instance
     private static JSLintUIPlugin plugin;
 
+    /** Milliseconds to wait after typing stops, before linting. */
+    private static final int DEFAULT_AS_YOU_TYPE_DELAY = 100;
+
     private IPreferenceStore preferenceStore;
 
+    private final AsYouTypeLinter asYouTypeLinter = new AsYouTypeLinter();
+
     /**
      * The constructor
      */
@@ -36,6 +44,7 @@ public class JSLintUIPlugin extends AbstractUIPlugin {
     public void start(BundleContext context) throws Exception {
         super.start(context);
         plugin = this;
+        initializeDefaultPreferences();
     }
 
     /*
@@ -45,6 +54,7 @@ public class JSLintUIPlugin extends AbstractUIPlugin {
      */
     @Override
     public void stop(BundleContext context) throws Exception {
+        asYouTypeLinter.dispose();
         plugin = null;
         super.stop(context);
     }
@@ -58,6 +68,21 @@ public class JSLintUIPlugin extends AbstractUIPlugin {
         return plugin;
     }
 
+    /** Return the linter which annotates open editors as you type. */
+    public AsYouTypeLinter getAsYouTypeLinter() {
+        return asYouTypeLinter;
+    }
+
+    /**
+     * Our preferences are stored alongside the core plugin's, but it can't know about the ones
+     * which only make sense in the UI, so set their defaults here.
+     */
+    private void initializeDefaultPreferences() {
+        IEclipsePreferences node = DefaultScope.INSTANCE.getNode(JSLintPlugin.PLUGIN_ID);
+        node.putBoolean(AsYouTypeLinter.LINT_AS_YOU_TYPE_PREFERENCE, false);
+        node.putInt(AsYouTypeLinter.AS_YOU_TYPE_DELAY_PREFERENCE, DEFAULT_AS_YOU_TYPE_DELAY);
+    }
+
     /**
      * Override the default implementation in order to store prefs in the correct scope.
      *
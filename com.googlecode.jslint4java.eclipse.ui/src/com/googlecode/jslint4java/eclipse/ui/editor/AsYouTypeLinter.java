@@ -0,0 +1,225 @@
+package com.googlecode.jslint4java.eclipse.ui.editor;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences.IPreferenceChangeListener;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences.PreferenceChangeEvent;
+import org.eclipse.core.runtime.preferences.InstanceScope;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.source.IAnnotationModel;
+import org.eclipse.ui.IEditorInput;
+import org.eclipse.ui.IEditorReference;
+import org.eclipse.ui.IPartListener2;
+import org.eclipse.ui.IWorkbench;
+import org.eclipse.ui.IWorkbenchPage;
+import org.eclipse.ui.IWorkbenchPart;
+import org.eclipse.ui.IWorkbenchPartReference;
+import org.eclipse.ui.IWorkbenchWindow;
+import org.eclipse.ui.IWindowListener;
+import org.eclipse.ui.texteditor.IDocumentProvider;
+import org.eclipse.ui.texteditor.ITextEditor;
+
+import com.googlecode.jslint4java.eclipse.JSLintLog;
+import com.googlecode.jslint4java.eclipse.JSLintPlugin;
+import com.googlecode.jslint4java.eclipse.builder.JSLintNature;
+import com.googlecode.jslint4java.eclipse.builder.LintPreFilter;
+import com.googlecode.jslint4java.eclipse.builder.LintService;
+
+/**
+ * Watch for text editors being opened on JavaScript files in projects with the jslint4java
+ * nature, and lint them as they're edited. See {@link EditorLinter}. Editors which are already
+ * open are connected or disconnected when the <i>lint_as_you_type</i> preference changes.
+ * <p>
+ * All methods must be called on the UI thread.
+ */
+public class AsYouTypeLinter implements IWindowListener, IPartListener2 {
+
+    /** Should open editors be linted as you type? */
+    public static final String LINT_AS_YOU_TYPE_PREFERENCE = "lint_as_you_type";
+
+    /** How many milliseconds to wait after the last keystroke before linting. */
+    public static final String AS_YOU_TYPE_DELAY_PREFERENCE = "as_you_type_delay_ms";
+
+    private final Map<ITextEditor, EditorLinter> linters =
+            new HashMap<ITextEditor, EditorLinter>();
+    private IWorkbench workbench;
+
+    /** Preference changes can happen on any thread, so hand them over to the UI thread. */
+    private final IPreferenceChangeListener listener = new IPreferenceChangeListener() {
+        public void preferenceChange(PreferenceChangeEvent ev) {
+            if (!ev.getKey().equals(LINT_AS_YOU_TYPE_PREFERENCE)) {
+                return;
+            }
+            IWorkbench current = workbench;
+            if (current == null || current.isClosing()) {
+                return;
+            }
+            current.getDisplay().asyncExec(new Runnable() {
+                public void run() {
+                    enablementChanged();
+                }
+            });
+        }
+    };
+
+    /** Start watching all of {@code workbench}'s windows, including editors already open. */
+    public void install(IWorkbench workbench) {
+        this.workbench = workbench;
+        workbench.addWindowListener(this);
+        InstanceScope.INSTANCE.getNode(JSLintPlugin.PLUGIN_ID).addPreferenceChangeListener(
+                listener);
+        for (IWorkbenchWindow window : workbench.getWorkbenchWindows()) {
+            windowOpened(window);
+        }
+    }
+
+    /** Stop watching, and remove all our annotations. */
+    public void dispose() {
+        if (workbench == null) {
+            return;
+        }
+        workbench.removeWindowListener(this);
+        InstanceScope.INSTANCE.getNode(JSLintPlugin.PLUGIN_ID).removePreferenceChangeListener(
+                listener);
+        for (IWorkbenchWindow window : workbench.getWorkbenchWindows()) {
+            window.getPartService().removePartListener(this);
+        }
+        disconnectAll();
+        workbench = null;
+    }
+
+    boolean isEnabled() {
+        return Platform.getPreferencesService().getBoolean(JSLintPlugin.PLUGIN_ID,
+                LINT_AS_YOU_TYPE_PREFERENCE, false, null);
+    }
+
+    long getDelay() {
+        return Platform.getPreferencesService().getLong(JSLintPlugin.PLUGIN_ID,
+                AS_YOU_TYPE_DELAY_PREFERENCE, 0, null);
+    }
+
+    public void windowOpened(IWorkbenchWindow window) {
+        window.getPartService().addPartListener(this);
+        connectAll(window);
+    }
+
+    public void windowClosed(IWorkbenchWindow window) {
+        window.getPartService().removePartListener(this);
+    }
+
+    public void windowActivated(IWorkbenchWindow window) {
+    }
+
+    public void windowDeactivated(IWorkbenchWindow window) {
+    }
+
+    public void partOpened(IWorkbenchPartReference ref) {
+        connect(ref.getPart(false));
+    }
+
+    public void partClosed(IWorkbenchPartReference ref) {
+        disconnect(ref.getPart(false));
+    }
+
+    public void partInputChanged(IWorkbenchPartReference ref) {
+        IWorkbenchPart part = ref.getPart(false);
+        disconnect(part);
+        connect(part);
+    }
+
+    public void partActivated(IWorkbenchPartReference ref) {
+    }
+
+    public void partBroughtToTop(IWorkbenchPartReference ref) {
+    }
+
+    public void partDeactivated(IWorkbenchPartReference ref) {
+    }
+
+    public void partHidden(IWorkbenchPartReference ref) {
+    }
+
+    public void partVisible(IWorkbenchPartReference ref) {
+    }
+
+    /** Connect every open editor if we've just been enabled, or disconnect them if not. */
+    private void enablementChanged() {
+        if (workbench == null) {
+            return;
+        }
+        if (isEnabled()) {
+            for (IWorkbenchWindow window : workbench.getWorkbenchWindows()) {
+                connectAll(window);
+            }
+        } else {
+            disconnectAll();
+        }
+    }
+
+    private void connectAll(IWorkbenchWindow window) {
+        for (IWorkbenchPage page : window.getPages()) {
+            for (IEditorReference ref : page.getEditorReferences()) {
+                // Don't force editors which haven't been restored yet to be created.
+                connect(ref.getPart(false));
+            }
+        }
+    }
+
+    private void disconnectAll() {
+        for (EditorLinter linter : linters.values()) {
+            linter.disconnect();
+        }
+        linters.clear();
+    }
+
+    /** Start linting {@code part} if it's an editor we're interested in. */
+    private void connect(IWorkbenchPart part) {
+        if (!(part instanceof ITextEditor) || linters.containsKey(part) || !isEnabled()) {
+            return;
+        }
+        ITextEditor editor = (ITextEditor) part;
+        IEditorInput input = editor.getEditorInput();
+        IFile file = input == null ? null : (IFile) input.getAdapter(IFile.class);
+        LintService service = JSLintPlugin.getDefault().getLintService();
+        LintPreFilter preFilter = JSLintPlugin.getDefault().getPreFilter();
+        if (file == null || !file.getName().endsWith(".js") || !hasNature(file)
+                || service.getExcluder().isExcluded(file) || preFilter.check(file) != null) {
+            return;
+        }
+        IDocumentProvider provider = editor.getDocumentProvider();
+        IDocument document = provider == null ? null : provider.getDocument(input);
+        IAnnotationModel model = provider == null ? null : provider.getAnnotationModel(input);
+        if (document == null || model == null) {
+            return;
+        }
+        EditorLinter linter = new EditorLinter(editor, file, document, model, service, preFilter,
+                this);
+        linters.put(editor, linter);
+        linter.connect();
+    }
+
+    private void disconnect(IWorkbenchPart part) {
+        EditorLinter linter = linters.remove(part);
+        if (linter != null) {
+            linter.disconnect();
+        }
+    }
+
+    private boolean hasNature(IFile file) {
+        IProject project = file.getProject();
+        if (!project.isOpen()) {
+            return false;
+        }
+        try {
+            return project.hasNature(JSLintNature.NATURE_ID);
+        } catch (CoreException e) {
+            JSLintLog.error(e);
+            return false;
+        }
+    }
+}
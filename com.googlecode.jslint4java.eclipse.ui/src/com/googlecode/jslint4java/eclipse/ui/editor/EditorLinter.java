@@ -0,0 +1,292 @@
+package com.googlecode.jslint4java.eclipse.ui.editor;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.Position;
+import org.eclipse.jface.text.source.Annotation;
+import org.eclipse.jface.text.source.IAnnotationModel;
+import org.eclipse.jface.text.source.IAnnotationModelExtension;
+import org.eclipse.ui.IEditorPart;
+import org.eclipse.ui.IPropertyListener;
+import org.eclipse.ui.texteditor.ITextEditor;
+import org.eclipse.ui.texteditor.MarkerAnnotation;
+import org.eclipse.ui.texteditor.MarkerUtilities;
+
+import com.googlecode.jslint4java.Issue;
+import com.googlecode.jslint4java.eclipse.JSLintLog;
+import com.googlecode.jslint4java.eclipse.builder.JSLintBuilder;
+import com.googlecode.jslint4java.eclipse.builder.JSLintProvider;
+import com.googlecode.jslint4java.eclipse.builder.LintEngine;
+import com.googlecode.jslint4java.eclipse.builder.LintPreFilter;
+import com.googlecode.jslint4java.eclipse.builder.LintService;
+import com.googlecode.jslint4java.eclipse.builder.LintWatchdog;
+
+/**
+ * Lint the document of a single open editor as it's edited. Each change (re)schedules a job
+ * after a short delay, so a burst of typing results in one run. The results are shown as
+ * annotations, which live only as long as the editor does; nothing is written to disk.
+ * <p>
+ * The builder's markers already describe the saved file, so annotations are only shown while
+ * there are unsaved changes, and not for issues which a marker on the same line already shows.
+ * Content which the {@link LintPreFilter} would have the builder skip isn't linted either.
+ * <p>
+ * A run which is overtaken by a newer edit is cancelled, and stopped by the {@link LintWatchdog}.
+ * So is one which takes longer than the lint timeout, in which case the old annotations stay.
+ */
+class EditorLinter implements IDocumentListener, IPropertyListener {
+
+    /** Must match the annotation type in plugin.xml. */
+    static final String ANNOTATION_TYPE = "com.googlecode.jslint4java.eclipse.ui.lintAnnotation";
+
+    private class LintJob extends Job {
+        public LintJob() {
+            super("jslint4java: " + file.getName());
+            setSystem(true);
+            setPriority(INTERACTIVE);
+        }
+
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+            long stamp = edits;
+            if (!dirty) {
+                // Nothing the markers don't already show.
+                replace(new HashMap<Annotation, Position>());
+                return Status.OK_STATUS;
+            }
+            // Documents aren't thread safe, but if this read races with an edit, the stamp
+            // will have moved on by the time we're done and the results are discarded.
+            String source = document.get();
+            if (monitor.isCanceled()) {
+                return Status.CANCEL_STATUS;
+            }
+            if (preFilter.check(source) != null) {
+                replace(new HashMap<Annotation, Position>());
+                return Status.OK_STATUS;
+            }
+            List<Issue> issues;
+            try {
+                lintService.acquire(monitor);
+            } catch (OperationCanceledException e) {
+                return Status.CANCEL_STATUS;
+            }
+            LintEngine lint = null;
+            boolean finished = false;
+            try {
+                lint = lintProvider.checkOut(file.getProject());
+                issues = lintService.lint(lint, file.getProject(), file.getFullPath().toString(),
+                        source, monitor).getIssues();
+                finished = true;
+            } catch (LintWatchdog.TimeoutException e) {
+                return Status.CANCEL_STATUS;
+            } catch (OperationCanceledException e) {
+                return Status.CANCEL_STATUS;
+            } catch (RuntimeException e) {
+                // A broken engine would otherwise be reported on every keystroke.
+                if (!failed) {
+                    failed = true;
+                    JSLintLog.error("Unable to lint " + file.getFullPath() + " as you type", e);
+                }
+                return Status.OK_STATUS;
+            } finally {
+                if (finished) {
+                    lintProvider.checkIn(lint);
+                } else if (lint != null) {
+                    // An aborted run may have left it in a mess.
+                    lintProvider.discard(lint);
+                }
+                lintService.release();
+            }
+            if (monitor.isCanceled() || stamp != edits) {
+                return Status.CANCEL_STATUS;
+            }
+            show(issues);
+            return Status.OK_STATUS;
+        }
+    }
+
+    private final ITextEditor editor;
+    private final IFile file;
+    private final IDocument document;
+    private final IAnnotationModel annotationModel;
+    private final LintService lintService;
+    private final JSLintProvider lintProvider;
+    private final LintPreFilter preFilter;
+    private final AsYouTypeLinter owner;
+    private final Job job;
+
+    /** Incremented on every change to the document. */
+    private volatile long edits;
+
+    /** Does the editor have unsaved changes? */
+    private volatile boolean dirty;
+
+    /** Has linting failed, and been logged, already? */
+    private volatile boolean failed;
+
+    /** The annotations we're currently showing. */
+    private Annotation[] shown = new Annotation[0];
+
+    EditorLinter(ITextEditor editor, IFile file, IDocument document,
+            IAnnotationModel annotationModel, LintService lintService, LintPreFilter preFilter,
+            AsYouTypeLinter owner) {
+        this.editor = editor;
+        this.file = file;
+        this.document = document;
+        this.annotationModel = annotationModel;
+        this.lintService = lintService;
+        this.lintProvider = lintService.getLintProvider();
+        this.preFilter = preFilter;
+        this.owner = owner;
+        this.job = new LintJob();
+    }
+
+    /** Start listening to the document, and lint it straight away. */
+    void connect() {
+        dirty = editor.isDirty();
+        editor.addPropertyListener(this);
+        document.addDocumentListener(this);
+        job.schedule();
+    }
+
+    /** Stop listening to the document, and remove our annotations. */
+    void disconnect() {
+        editor.removePropertyListener(this);
+        document.removeDocumentListener(this);
+        edits++;
+        job.cancel();
+        replace(new HashMap<Annotation, Position>());
+    }
+
+    public void documentAboutToBeChanged(DocumentEvent event) {
+    }
+
+    public void documentChanged(DocumentEvent event) {
+        edits++;
+        job.cancel();
+        if (owner.isEnabled()) {
+            job.schedule(owner.getDelay());
+        } else {
+            replace(new HashMap<Annotation, Position>());
+        }
+    }
+
+    /** Once the editor is saved (or reverted), the markers are up to date again. */
+    public void propertyChanged(Object source, int propId) {
+        if (propId != IEditorPart.PROP_DIRTY) {
+            return;
+        }
+        dirty = editor.isDirty();
+        if (!dirty) {
+            edits++;
+            job.cancel();
+            replace(new HashMap<Annotation, Position>());
+        }
+    }
+
+    /**
+     * Replace the annotations we're showing with ones for {@code issues}, leaving out those
+     * which a marker already shows.
+     */
+    private void show(List<Issue> issues) {
+        Set<String> marked = markedIssues();
+        Map<Annotation, Position> added = new HashMap<Annotation, Position>();
+        for (Issue issue : issues) {
+            Position position = position(issue);
+            if (position != null && !marked.contains(key(issue.getLine() - 1,
+                    issue.getReason()))) {
+                added.put(new Annotation(ANNOTATION_TYPE, false, issue.getReason()), position);
+            }
+        }
+        replace(added);
+    }
+
+    private void replace(Map<Annotation, Position> added) {
+        Annotation[] removed;
+        synchronized (this) {
+            removed = shown;
+            shown = added.keySet().toArray(new Annotation[added.size()]);
+        }
+        if (annotationModel instanceof IAnnotationModelExtension) {
+            ((IAnnotationModelExtension) annotationModel).replaceAnnotations(removed, added);
+        } else {
+            for (Annotation annotation : removed) {
+                annotationModel.removeAnnotation(annotation);
+            }
+            for (Map.Entry<Annotation, Position> entry : added.entrySet()) {
+                annotationModel.addAnnotation(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * The line and message of each issue which one of the builder's markers shows. Marker
+     * positions follow edits, so the line is where the issue is now, not where it was saved.
+     */
+    private Set<String> markedIssues() {
+        Set<String> marked = new HashSet<String>();
+        Iterator<?> it = annotationModel.getAnnotationIterator();
+        while (it.hasNext()) {
+            Object next = it.next();
+            if (!(next instanceof MarkerAnnotation)) {
+                continue;
+            }
+            MarkerAnnotation annotation = (MarkerAnnotation) next;
+            IMarker marker = annotation.getMarker();
+            Position position = annotationModel.getPosition(annotation);
+            if (position == null || annotation.isMarkedDeleted()
+                    || !JSLintBuilder.MARKER_TYPE.equals(MarkerUtilities.getMarkerType(marker))) {
+                continue;
+            }
+            try {
+                marked.add(key(document.getLineOfOffset(position.getOffset()),
+                        marker.getAttribute(IMarker.MESSAGE, "")));
+            } catch (BadLocationException e) {
+                // Not in the document any more.
+            }
+        }
+        return marked;
+    }
+
+    private String key(int line, String reason) {
+        return line + ":" + reason;
+    }
+
+    /**
+     * Work out where {@code issue} is in the document: from its character to the end of the
+     * line. Returns null if it's not in the document at all.
+     */
+    private Position position(Issue issue) {
+        try {
+            int line = issue.getLine() - 1;
+            if (line < 0 || line >= document.getNumberOfLines()) {
+                return null;
+            }
+            IRegion region = document.getLineInformation(line);
+            int column = Math.min(Math.max(issue.getCharacter() - 1, 0), region.getLength());
+            if (column == region.getLength() && column > 0) {
+                // Past the end of the line; highlight the last character instead.
+                column--;
+            }
+            return new Position(region.getOffset() + column, region.getLength() - column);
+        } catch (BadLocationException e) {
+            return null;
+        }
+    }
+}
@@ -2,7 +2,10 @@ package com.googlecode.jslint4java.eclipse.ui.preferences;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
+import org.eclipse.jface.preference.BooleanFieldEditor;
+import org.eclipse.jface.preference.ComboFieldEditor;
 import org.eclipse.jface.preference.FieldEditor;
 import org.eclipse.jface.preference.IntegerFieldEditor;
 import org.eclipse.jface.preference.PreferencePage;
@@ -22,8 +25,16 @@ import org.eclipse.ui.IWorkbench;
 import org.eclipse.ui.IWorkbenchPreferencePage;
 
 import com.googlecode.jslint4java.Option;
+import com.googlecode.jslint4java.eclipse.JSLintPlugin;
+import com.googlecode.jslint4java.eclipse.builder.ChunkedLint;
 import com.googlecode.jslint4java.eclipse.builder.JSLintBuilder;
+import com.googlecode.jslint4java.eclipse.builder.JSLintProvider;
+import com.googlecode.jslint4java.eclipse.builder.LintEngines;
+import com.googlecode.jslint4java.eclipse.builder.LintMetrics;
+import com.googlecode.jslint4java.eclipse.builder.LintPreFilter;
+import com.googlecode.jslint4java.eclipse.builder.LintWatchdog;
 import com.googlecode.jslint4java.eclipse.ui.JSLintUIPlugin;
+import com.googlecode.jslint4java.eclipse.ui.editor.AsYouTypeLinter;
 
 /**
  * This class represents a preference page that is contributed to the Preferences dialog. By
@@ -34,7 +45,8 @@ import com.googlecode.jslint4java.eclipse.ui.JSLintUIPlugin;
  * belongs to the main plug-in class. That way, preferences can be accessed directly via the
  * preference store.
  * <p>
- * TODO: trigger a rebuild on change.
+ * Changes are picked up by the core plug-in, which re-lints the affected projects in the
+ * background.
  */
 public class OptionsPreferencePage extends PreferencePage implements IWorkbenchPreferencePage {
 
@@ -156,9 +168,59 @@ public class OptionsPreferencePage extends PreferencePage implements IWorkbenchP
         addIntegerFieldEditor(parent, Option.MAXERR);
         addIntegerFieldEditor(parent, Option.MAXLEN);
         addStringFieldEditor(parent, Option.PREDEF);
+        addEngineFieldEditor(parent);
+        if (showsWorkspacePrefs()) {
+            createWorkspacePrefs(parent);
+        }
+    }
+
+    /** Create and add a {@link ComboFieldEditor} to pick the lint engine with. */
+    private void addEngineFieldEditor(Composite parent) {
+        Map<String, String> names = JSLintPlugin.getDefault().getLintService().getLintProvider()
+                .getEngines().getNames();
+        String[][] entries = new String[names.size()][];
+        int i = 0;
+        for (Map.Entry<String, String> entry : names.entrySet()) {
+            entries[i++] = new String[] { entry.getValue(), entry.getKey() };
+        }
+        addFieldEditor(new ComboFieldEditor(LintEngines.LINT_ENGINE_PREFERENCE, "Lint engine",
+                entries, parent));
+    }
+
+    /**
+     * Should the preferences which only apply to the workspace as a whole (as opposed to the
+     * JSLint options) be shown?
+     */
+    protected boolean showsWorkspacePrefs() {
+        return true;
+    }
+
+    private void createWorkspacePrefs(Composite parent) {
         // Our own eclipse-specific preference.
         addFieldEditor(new StringFieldEditor(JSLintBuilder.EXCLUDE_PATH_REGEXES_PREFERENCE,
-                "File patterns to exclude", parent));
+                "File patterns to exclude (regexes, or glob:**/dir/**)", parent));
+        addFieldEditor(new StringFieldEditor(JSLintBuilder.OUTPUT_FOLDERS_PREFERENCE,
+                "Output folders to skip", parent));
+        addFieldEditor(new IntegerFieldEditor(JSLintBuilder.LINT_THREADS_PREFERENCE,
+                "Number of lint threads", parent));
+        addFieldEditor(new IntegerFieldEditor(JSLintBuilder.MARKER_CHUNK_SIZE_PREFERENCE,
+                "Files to update markers for at once", parent));
+        addFieldEditor(new IntegerFieldEditor(LintPreFilter.MAX_FILE_SIZE_PREFERENCE,
+                "Largest file to lint (KB, 0 for no limit)", parent));
+        addFieldEditor(new BooleanFieldEditor(LintPreFilter.SKIP_MINIFIED_PREFERENCE,
+                "Skip minified files", parent));
+        addFieldEditor(new IntegerFieldEditor(LintWatchdog.LINT_TIMEOUT_PREFERENCE,
+                "Time limit per file (ms, 0 for no limit)", parent));
+        addFieldEditor(new IntegerFieldEditor(ChunkedLint.CHUNKED_LINT_LINES_PREFERENCE,
+                "Lint files with this many lines in chunks (0 for never)", parent));
+        addFieldEditor(new BooleanFieldEditor(JSLintProvider.PREWARM_PREFERENCE,
+                "Prepare JSLint on startup", parent));
+        addFieldEditor(new BooleanFieldEditor(AsYouTypeLinter.LINT_AS_YOU_TYPE_PREFERENCE,
+                "Lint open editors as you type", parent));
+        addFieldEditor(new IntegerFieldEditor(AsYouTypeLinter.AS_YOU_TYPE_DELAY_PREFERENCE,
+                "Delay before linting as you type (ms)", parent));
+        addFieldEditor(new BooleanFieldEditor(LintMetrics.METRICS_DUMP_PREFERENCE,
+                "Write build metrics to metrics.json", parent));
     }
 
     public void init(IWorkbench workbench) {
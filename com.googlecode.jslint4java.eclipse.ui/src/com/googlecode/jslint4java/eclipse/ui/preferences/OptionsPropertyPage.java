@@ -10,7 +10,9 @@ import org.eclipse.ui.preferences.ScopedPreferenceStore;
 import com.googlecode.jslint4java.eclipse.JSLintPlugin;
 
 /**
- * Reuse the preference page to create a project properties page.
+ * Reuse the preference page to create a project properties page. Only the JSLint options are
+ * shown, as the rest apply to the workspace as a whole. Options set here override the workspace
+ * ones for this project, and changing them re-lints the project.
  */
 public class OptionsPropertyPage extends OptionsPreferencePage implements IWorkbenchPropertyPage {
 
@@ -21,6 +23,11 @@ public class OptionsPropertyPage extends OptionsPreferencePage implements IWorkb
         super();
     }
 
+    @Override
+    protected boolean showsWorkspacePrefs() {
+        return false;
+    }
+
     public IAdaptable getElement() {
         return element;
     }
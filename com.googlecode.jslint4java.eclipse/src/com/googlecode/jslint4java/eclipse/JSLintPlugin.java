@@ -3,6 +3,17 @@ package com.googlecode.jslint4java.eclipse;
 import org.eclipse.core.runtime.Plugin;
 import org.osgi.framework.BundleContext;
 
+import com.googlecode.jslint4java.eclipse.builder.DeltaCounters;
+import com.googlecode.jslint4java.eclipse.builder.GlobalsIndex;
+import com.googlecode.jslint4java.eclipse.builder.JSLintProvider;
+import com.googlecode.jslint4java.eclipse.builder.LintMetrics;
+import com.googlecode.jslint4java.eclipse.builder.LintPreFilter;
+import com.googlecode.jslint4java.eclipse.builder.LintQuarantine;
+import com.googlecode.jslint4java.eclipse.builder.LintResultCache;
+import com.googlecode.jslint4java.eclipse.builder.LintService;
+import com.googlecode.jslint4java.eclipse.builder.MarkerSnapshot;
+import com.googlecode.jslint4java.eclipse.builder.ReadCounters;
+
 /**
  * The activator class controls the plug-in life cycle
  */
@@ -14,6 +25,24 @@ public class JSLintPlugin extends Plugin {
     // The shared instance
     private static JSLintPlugin plugin;
 
+    private LintService lintService;
+
+    private LintResultCache resultCache;
+
+    private LintMetrics metrics;
+
+    private LintQuarantine quarantine;
+
+    private GlobalsIndex globalsIndex;
+
+    private MarkerSnapshot markerSnapshot;
+
+    private final DeltaCounters deltaCounters = new DeltaCounters();
+
+    private final ReadCounters readCounters = new ReadCounters();
+
+    private final LintPreFilter preFilter = new LintPreFilter();
+
     /**
      * The constructor
      */
@@ -29,6 +58,15 @@ public class JSLintPlugin extends Plugin {
     public void start(BundleContext context) throws Exception {
         super.start(context);
         plugin = this;
+        metrics = new LintMetrics(getStateLocation().append("metrics.json").toFile(),
+                readCounters, deltaCounters);
+        metrics.register();
+        lintService = new LintService(getStateLocation().append("compiled").toFile(), metrics);
+        lintService.start();
+        resultCache = new LintResultCache(getStateLocation().append("lint-results.bin").toFile());
+        quarantine = new LintQuarantine(getStateLocation().append("quarantine.bin").toFile());
+        globalsIndex = new GlobalsIndex(getStateLocation().append("globals-index.bin").toFile());
+        markerSnapshot = new MarkerSnapshot(getStateLocation().append("markers.bin").toFile());
     }
 
     /*
@@ -38,6 +76,18 @@ public class JSLintPlugin extends Plugin {
      */
     @Override
     public void stop(BundleContext context) throws Exception {
+        resultCache.save();
+        resultCache = null;
+        quarantine.save();
+        quarantine = null;
+        globalsIndex.save();
+        globalsIndex = null;
+        markerSnapshot.save();
+        markerSnapshot = null;
+        lintService.stop();
+        lintService = null;
+        metrics.unregister();
+        metrics = null;
         plugin = null;
         super.stop(context);
     }
@@ -50,4 +100,74 @@ public class JSLintPlugin extends Plugin {
     public static JSLintPlugin getDefault() {
         return plugin;
     }
+
+    /**
+     * Returns the service shared by all builders and editors.
+     */
+    public LintService getLintService() {
+        return lintService;
+    }
+
+    /**
+     * Returns the provider of JSLint instances shared by all builders.
+     */
+    public JSLintProvider getLintProvider() {
+        return lintService.getLintProvider();
+    }
+
+    /**
+     * Returns the cache of previous lint results.
+     */
+    public LintResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Returns the files which JSLint keeps timing out on.
+     */
+    public LintQuarantine getQuarantine() {
+        return quarantine;
+    }
+
+    /**
+     * Returns which global names each file uses.
+     */
+    public GlobalsIndex getGlobalsIndex() {
+        return globalsIndex;
+    }
+
+    /**
+     * Returns the issues each file was last found to have.
+     */
+    public MarkerSnapshot getMarkerSnapshot() {
+        return markerSnapshot;
+    }
+
+    /**
+     * Returns the figures for where build time goes.
+     */
+    public LintMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the counts of what incremental builds did with their resource deltas.
+     */
+    public DeltaCounters getDeltaCounters() {
+        return deltaCounters;
+    }
+
+    /**
+     * Returns the counts of how much has been read for linting, and what it cost.
+     */
+    public ReadCounters getReadCounters() {
+        return readCounters;
+    }
+
+    /**
+     * Returns the filter which decides whether files are worth linting.
+     */
+    public LintPreFilter getPreFilter() {
+        return preFilter;
+    }
 }
@@ -0,0 +1,282 @@
+package com.googlecode.jslint4java.eclipse.builder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * What a build did, and where its time went. The same class is used for a single build, and
+ * for the total over all builds; see {@link LintMetrics}. Times are measured per file, so with
+ * several lint threads, they can add up to more than the build's elapsed time.
+ */
+public class BuildStats {
+
+    /** How many of the slowest files to remember. */
+    static final int SLOWEST = 10;
+
+    /** How long it took to lint a file. */
+    public static class FileTime {
+        private final String path;
+        private final long micros;
+
+        FileTime(String path, long micros) {
+            this.path = path;
+            this.micros = micros;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public long getMicros() {
+            return micros;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s (%d ms)", path, micros / 1000);
+        }
+    }
+
+    private static final Comparator<FileTime> SLOWEST_FIRST = new Comparator<FileTime>() {
+        public int compare(FileTime a, FileTime b) {
+            return a.micros < b.micros ? 1 : a.micros > b.micros ? -1 : 0;
+        }
+    };
+
+    private final String name;
+    private final AtomicLong builds = new AtomicLong();
+    private final AtomicLong elapsedNanos = new AtomicLong();
+    private final AtomicLong filesVisited = new AtomicLong();
+    private final AtomicLong filesExcluded = new AtomicLong();
+    private final AtomicLong filesSkipped = new AtomicLong();
+    private final AtomicLong filesCached = new AtomicLong();
+    private final AtomicLong filesRestored = new AtomicLong();
+    private final AtomicLong filesLinted = new AtomicLong();
+    private final AtomicLong filesTimedOut = new AtomicLong();
+    private final AtomicLong readNanos = new AtomicLong();
+    private final AtomicLong lintNanos = new AtomicLong();
+    private final AtomicLong markerNanos = new AtomicLong();
+    private final LatencyHistogram lintLatency = new LatencyHistogram();
+
+    /** The slowest time seen for each of the slowest files. */
+    private final Map<String, Long> slowest = new HashMap<String, Long>();
+
+    BuildStats(String name) {
+        this.name = name;
+    }
+
+    /** The project this build was for, or <i>total</i>. */
+    public String getName() {
+        return name;
+    }
+
+    /** How many builds these figures are for. */
+    public long getBuilds() {
+        return builds.get();
+    }
+
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos.get());
+    }
+
+    /** How many JavaScript files were looked at. */
+    public long getFilesVisited() {
+        return filesVisited.get();
+    }
+
+    /** How many files were excluded by the user's patterns. */
+    public long getFilesExcluded() {
+        return filesExcluded.get();
+    }
+
+    /** How many files were skipped by the {@link LintPreFilter}. */
+    public long getFilesSkipped() {
+        return filesSkipped.get();
+    }
+
+    /** How many files' results came from the {@link LintResultCache}. */
+    public long getFilesCached() {
+        return filesCached.get();
+    }
+
+    /** How many files' results came from the {@link MarkerSnapshot}, without reading them. */
+    public long getFilesRestored() {
+        return filesRestored.get();
+    }
+
+    /** How many files were actually run through JSLint. */
+    public long getFilesLinted() {
+        return filesLinted.get();
+    }
+
+    /** How many files JSLint ran out of time on. */
+    public long getFilesTimedOut() {
+        return filesTimedOut.get();
+    }
+
+    /** Time spent reading and decoding files. */
+    public long getReadMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(readNanos.get());
+    }
+
+    /** Time spent in JSLint. */
+    public long getLintMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lintNanos.get());
+    }
+
+    /** Time spent updating markers. */
+    public long getMarkerMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(markerNanos.get());
+    }
+
+    /** The time that {@code fraction} (e.g. 0.95) of files took to lint, at most. */
+    public double getLintLatencyMillis(double fraction) {
+        return lintLatency.percentile(fraction) / 1000.0;
+    }
+
+    /** The longest time any file took to lint. */
+    public double getMaxLintMillis() {
+        return lintLatency.getMax() / 1000.0;
+    }
+
+    /** The files which took longest to lint, slowest first. */
+    public List<FileTime> getSlowestFiles() {
+        List<FileTime> result = new ArrayList<FileTime>();
+        synchronized (slowest) {
+            for (Map.Entry<String, Long> entry : slowest.entrySet()) {
+                result.add(new FileTime(entry.getKey(), entry.getValue()));
+            }
+        }
+        Collections.sort(result, SLOWEST_FIRST);
+        return result;
+    }
+
+    void visited() {
+        filesVisited.incrementAndGet();
+    }
+
+    void excluded() {
+        filesExcluded.incrementAndGet();
+    }
+
+    void skipped() {
+        filesSkipped.incrementAndGet();
+    }
+
+    void cached() {
+        filesCached.incrementAndGet();
+    }
+
+    void restored() {
+        filesRestored.incrementAndGet();
+    }
+
+    void read(long nanos) {
+        readNanos.addAndGet(nanos);
+    }
+
+    void linted(String path, long nanos) {
+        filesLinted.incrementAndGet();
+        lintNanos.addAndGet(nanos);
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        lintLatency.record(micros);
+        noteSlow(path, micros);
+    }
+
+    void timedOut() {
+        filesTimedOut.incrementAndGet();
+    }
+
+    void markersUpdated(long nanos) {
+        markerNanos.addAndGet(nanos);
+    }
+
+    void finished(long nanos) {
+        builds.incrementAndGet();
+        elapsedNanos.addAndGet(nanos);
+    }
+
+    /** Add the figures for {@code build} to these. */
+    void add(BuildStats build) {
+        builds.addAndGet(build.builds.get());
+        elapsedNanos.addAndGet(build.elapsedNanos.get());
+        filesVisited.addAndGet(build.filesVisited.get());
+        filesExcluded.addAndGet(build.filesExcluded.get());
+        filesSkipped.addAndGet(build.filesSkipped.get());
+        filesCached.addAndGet(build.filesCached.get());
+        filesRestored.addAndGet(build.filesRestored.get());
+        filesLinted.addAndGet(build.filesLinted.get());
+        filesTimedOut.addAndGet(build.filesTimedOut.get());
+        readNanos.addAndGet(build.readNanos.get());
+        lintNanos.addAndGet(build.lintNanos.get());
+        markerNanos.addAndGet(build.markerNanos.get());
+        lintLatency.add(build.lintLatency);
+        for (FileTime time : build.getSlowestFiles()) {
+            noteSlow(time.path, time.micros);
+        }
+    }
+
+    private void noteSlow(String path, long micros) {
+        synchronized (slowest) {
+            Long previous = slowest.get(path);
+            if (previous != null) {
+                if (micros > previous) {
+                    slowest.put(path, micros);
+                }
+                return;
+            }
+            if (slowest.size() < SLOWEST) {
+                slowest.put(path, micros);
+                return;
+            }
+            Map.Entry<String, Long> fastest = null;
+            for (Map.Entry<String, Long> entry : slowest.entrySet()) {
+                if (fastest == null || entry.getValue() < fastest.getValue()) {
+                    fastest = entry;
+                }
+            }
+            if (micros > fastest.getValue()) {
+                slowest.remove(fastest.getKey());
+                slowest.put(path, micros);
+            }
+        }
+    }
+
+    /** Append these figures to {@code sb} as a JSON object. */
+    void appendJson(StringBuilder sb) {
+        sb.append('{');
+        sb.append("\"name\":").append(LintMetrics.quote(name));
+        sb.append(",\"builds\":").append(getBuilds());
+        sb.append(",\"elapsedMillis\":").append(getElapsedMillis());
+        sb.append(",\"filesVisited\":").append(getFilesVisited());
+        sb.append(",\"filesExcluded\":").append(getFilesExcluded());
+        sb.append(",\"filesSkipped\":").append(getFilesSkipped());
+        sb.append(",\"filesCached\":").append(getFilesCached());
+        sb.append(",\"filesRestored\":").append(getFilesRestored());
+        sb.append(",\"filesLinted\":").append(getFilesLinted());
+        sb.append(",\"filesTimedOut\":").append(getFilesTimedOut());
+        sb.append(",\"readMillis\":").append(getReadMillis());
+        sb.append(",\"lintMillis\":").append(getLintMillis());
+        sb.append(",\"markerMillis\":").append(getMarkerMillis());
+        sb.append(",\"lintP50Millis\":").append(getLintLatencyMillis(0.5));
+        sb.append(",\"lintP95Millis\":").append(getLintLatencyMillis(0.95));
+        sb.append(",\"lintMaxMillis\":").append(getMaxLintMillis());
+        sb.append(",\"slowestFiles\":[");
+        boolean first = true;
+        for (FileTime time : getSlowestFiles()) {
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            sb.append("{\"path\":").append(LintMetrics.quote(time.path));
+            sb.append(",\"millis\":").append(time.micros / 1000.0).append('}');
+        }
+        sb.append("]}");
+    }
+}
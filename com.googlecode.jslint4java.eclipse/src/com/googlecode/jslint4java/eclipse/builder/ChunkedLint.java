@@ -0,0 +1,580 @@
+package com.googlecode.jslint4java.eclipse.builder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.Platform;
+
+import com.googlecode.jslint4java.Issue;
+import com.googlecode.jslint4java.JSFunction;
+import com.googlecode.jslint4java.JSLintResult;
+import com.googlecode.jslint4java.Option;
+import com.googlecode.jslint4java.eclipse.JSLintPlugin;
+
+/**
+ * Lint very large files a chunk at a time, so that an edit only costs a lint of the chunk it's
+ * in.
+ * <p>
+ * A cheap tokenizer splits the file into chunks of whole top level statements. Each chunk is
+ * linted on its own, after a prelude which stands in for the rest of the file: the directive
+ * comments (<i>/*global</i>, <i>/*jslint</i> and so on) seen so far, and a <i>/*global</i>
+ * declaring the top level variables and functions of the earlier chunks. That's all JSLint knows
+ * of earlier statements when it reaches a top level statement, so the issues are the same as
+ * those from linting the whole file; their lines are shifted back into place. The issues for each
+ * chunk are cached under a digest of the options, prelude and chunk, so a change to the global
+ * declarations means re-linting every chunk after it.
+ * <p>
+ * Some things do depend on the whole file: the maximum number of errors, stopping at the first
+ * error, global <i>"use strict"</i>, anything which stops JSLint early, and globals used without
+ * being declared in one chunk and mentioned again in a later one. Whenever one of those comes
+ * into play, we give up and the whole file is linted as usual. <i>ChunkedLintCheck</i>, in the
+ * benchmarks module, checks that the two agree.
+ */
+public class ChunkedLint {
+
+    /** Files with at least this many lines are linted in chunks. 0 turns it off. */
+    public static final String CHUNKED_LINT_LINES_PREFERENCE = "chunked_lint_lines";
+
+    /** The smallest chunk worth linting on its own, in lines. */
+    static final int CHUNK_LINES = 200;
+
+    /** How many chunks' issues to remember. */
+    private static final int MAX_CACHED_CHUNKS = 5000;
+
+    /** JSLint's own default for {@link Option#MAXERR}. */
+    private static final int DEFAULT_MAXERR = 50;
+
+    /** Directive comments, which affect everything after them. */
+    private static final List<String> DIRECTIVES = Arrays.asList("/*jslint", "/*global",
+            "/*properties", "/*property", "/*members", "/*member");
+
+    /**
+     * The start of issues which mean that JSLint didn't get through a chunk the way it would the
+     * file. JSLint adds how far it got to <i>Stopping.</i>, quietly gives up on the rest of the
+     * file after a stray closing bracket (<i>Expected '(end)'</i>), and finds the program weird
+     * at its last token when a top level statement such as <i>return</i> cuts it short.
+     */
+    private static final List<String> WHOLE_FILE_REASONS = Arrays.asList("Stopping.",
+            "Too many errors.", "Use the function form of 'use strict'.",
+            "Expected '(end)' and instead saw", "Weird program.");
+
+    /** The line number in JSLint's complaint about an unmatched bracket. */
+    private static final Pattern FROM_LINE = Pattern.compile("from line (\\d+) and instead saw");
+
+    /** Words after which a {@code /} starts a regular expression rather than a division. */
+    private static final Set<String> REGEXP_PREFIX_WORDS = new HashSet<String>(Arrays.asList(
+            "return", "typeof", "case", "do", "else", "in", "instanceof", "new", "delete",
+            "void", "throw"));
+
+    /** Words which carry on a statement that ended on the line before. */
+    private static final Set<String> CONTINUATION_WORDS = new HashSet<String>(Arrays.asList(
+            "else", "catch", "finally", "while", "in", "instanceof"));
+
+    /** Words which can't end a statement, so a line ending with one is carried on by the next. */
+    private static final Set<String> UNFINISHED_WORDS = new HashSet<String>(Arrays.asList(
+            "var", "function", "return", "typeof", "case", "do", "else", "in", "instanceof",
+            "new", "delete", "void", "throw", "try", "finally"));
+
+    /** Words followed by a parenthesized header and then the statement they control. */
+    private static final Set<String> HEADER_WORDS = new HashSet<String>(Arrays.asList("if",
+            "for", "while", "with"));
+
+    /** Words starting a statement which can end with its closing brace. */
+    private static final Set<String> BLOCK_WORDS = new HashSet<String>(Arrays.asList(
+            "function", "if", "for", "while", "try", "switch", "with"));
+
+    /** Top level statements on consecutive lines, and what they declare for later ones. */
+    static class Chunk {
+        final int startLine;
+        final int endLine;
+        final List<String> names;
+        final List<String> directives;
+
+        Chunk(int startLine, int endLine, List<String> names, List<String> directives) {
+            this.startLine = startLine;
+            this.endLine = endLine;
+            this.names = names;
+            this.directives = directives;
+        }
+    }
+
+    /**
+     * A chunk's issues, with lines relative to the start of the chunk, and the global names it
+     * uses or declares.
+     */
+    private static class ChunkResult {
+        private final List<Issue> issues;
+        private final Set<String> globals;
+        /** Just the global variables, without the names mentioned by issues. */
+        private final Set<String> variables;
+
+        ChunkResult(List<Issue> issues, Set<String> globals, Set<String> variables) {
+            this.issues = issues;
+            this.globals = globals;
+            this.variables = variables;
+        }
+    }
+
+    /** In access order, so that the eldest entry is the least recently used. */
+    private final Map<String, ChunkResult> cache = new LinkedHashMap<String, ChunkResult>(16,
+            0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ChunkResult> eldest) {
+            return size() > MAX_CACHED_CHUNKS;
+        }
+    };
+
+    /** How many lines a file needs before it's linted in chunks, or 0 for never. */
+    static int chunkedLintLines() {
+        return Platform.getPreferencesService().getInt(JSLintPlugin.PLUGIN_ID,
+                CHUNKED_LINT_LINES_PREFERENCE, 0, null);
+    }
+
+    /**
+     * Lint {@code source} a chunk at a time with {@code lint}, which has the options
+     * {@code options} with the fingerprint {@code fingerprint}. Returns null if the file should
+     * be linted whole instead, because it's shorter than {@code minLines} or chunking would
+     * change the results.
+     *
+     * @throws LintWatchdog.TimeoutException if a chunk takes too long.
+     */
+    public JSLintResult lint(LintEngine lint, String fingerprint, Map<Option, String> options,
+            String systemId, String source, int minLines, IProgressMonitor monitor) {
+        if (minLines <= 0 || Boolean.parseBoolean(options.get(Option.PASSFAIL))
+                || countLines(source) < minLines) {
+            return null;
+        }
+        int[] lineStarts = lineStarts(source);
+        List<Chunk> chunks = split(source, CHUNK_LINES);
+        if (chunks.size() < 2) {
+            return null;
+        }
+        int maxErr = maxErr(options);
+        JSLintResult.ResultBuilder builder = new JSLintResult.ResultBuilder(systemId);
+        List<String> directives = new ArrayList<String>();
+        List<String> names = new ArrayList<String>();
+        // Everything declared so far, and the globals used without being declared.
+        Set<String> declared = new HashSet<String>();
+        Set<String> implied = new HashSet<String>();
+        int issueCount = 0;
+        for (Chunk chunk : chunks) {
+            Set<String> chunkDeclared = new HashSet<String>(chunk.names);
+            for (String directive : chunk.directives) {
+                if (directive.startsWith("/*global")) {
+                    chunkDeclared.addAll(directiveNames(directive));
+                }
+            }
+            if (!Collections.disjoint(chunk.names, names)) {
+                // JSLint would complain about the second declaration, but can't see the first.
+                return null;
+            }
+            String prelude = prelude(directives, names);
+            String text = source.substring(lineStarts[chunk.startLine],
+                    chunk.endLine < lineStarts.length ? lineStarts[chunk.endLine]
+                            : source.length());
+            String key = Digests.sha1(fingerprint + "\u0000" + prelude + "\u0000" + text);
+            ChunkResult result;
+            synchronized (cache) {
+                result = cache.get(key);
+            }
+            if (result == null) {
+                result = lintChunk(lint, systemId, prelude, text, monitor);
+                if (result == null) {
+                    return null;
+                }
+                synchronized (cache) {
+                    cache.put(key, result);
+                }
+            }
+            if (!Collections.disjoint(result.variables, implied)
+                    || !Collections.disjoint(chunkDeclared, implied)) {
+                // JSLint would remember the earlier use, in ways a prelude can't reproduce.
+                return null;
+            }
+            for (Issue issue : result.issues) {
+                builder.addIssue(moved(issue, systemId, chunk.startLine));
+            }
+            issueCount += result.issues.size();
+            if (issueCount >= maxErr) {
+                // JSLint would have stopped somewhere in here.
+                return null;
+            }
+            for (String global : result.globals) {
+                builder.addGlobal(global);
+            }
+            directives.addAll(chunk.directives);
+            names.addAll(chunk.names);
+            declared.addAll(chunkDeclared);
+            for (String variable : result.variables) {
+                if (!declared.contains(variable)) {
+                    implied.add(variable);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Lint {@code text} after {@code prelude}, returning its issues relative to the start of
+     * {@code text}, or null if they can't be trusted.
+     */
+    private ChunkResult lintChunk(LintEngine lint, String systemId, String prelude, String text,
+            IProgressMonitor monitor) {
+        int preludeLines = countLines(prelude);
+        JSLintResult result = lintText(lint, systemId, prelude + text, monitor);
+        List<Issue> issues = new ArrayList<Issue>(result.getIssues().size());
+        for (Issue issue : result.getIssues()) {
+            if (issue.getReason() == null || isWholeFileReason(issue.getReason())) {
+                return null;
+            }
+            if (issue.getLine() > preludeLines) {
+                issues.add(moved(issue, systemId, -preludeLines));
+            }
+        }
+        Set<String> variables = new HashSet<String>(result.getGlobals());
+        for (JSFunction function : result.getFunctions()) {
+            variables.addAll(function.getGlobal());
+            variables.addAll(function.getUndef());
+        }
+        return new ChunkResult(Collections.unmodifiableList(issues), GlobalsIndex
+                .globalsOf(result), variables);
+    }
+
+    private static boolean isWholeFileReason(String reason) {
+        for (String start : WHOLE_FILE_REASONS) {
+            if (reason.startsWith(start)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return a copy of {@code issue} in {@code systemId}, {@code lines} lines further down. The
+     * line a bracket was opened on is moved too, as JSLint only puts it in the reason.
+     */
+    private static Issue moved(Issue issue, String systemId, int lines) {
+        String reason = issue.getReason();
+        Matcher m = reason == null ? null : FROM_LINE.matcher(reason);
+        if (m != null && m.find()) {
+            int from = Integer.parseInt(m.group(1)) + lines;
+            reason = reason.substring(0, m.start(1)) + from + reason.substring(m.end(1));
+        }
+        return new Issue.IssueBuilder(systemId, issue.getLine() + lines,
+                issue.getCharacter(), reason).evidence(issue.getEvidence())
+                .raw(issue.getRaw()).a(issue.getA()).b(issue.getB()).c(issue.getC())
+                .d(issue.getD()).build();
+    }
+
+    /** Run JSLint over a single chunk. */
+    JSLintResult lintText(LintEngine lint, String systemId, String text,
+            IProgressMonitor monitor) {
+        return LintWatchdog.lint(lint, systemId, text, monitor);
+    }
+
+    /** Everything JSLint needs to know about the chunks before this one, one item per line. */
+    private static String prelude(List<String> directives, List<String> names) {
+        StringBuilder sb = new StringBuilder();
+        for (String directive : directives) {
+            sb.append(directive).append('\n');
+        }
+        if (!names.isEmpty()) {
+            // Writable, as they were declared with var or function.
+            sb.append("/*global ");
+            for (int i = 0; i < names.size(); i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                sb.append(names.get(i)).append(": true");
+            }
+            sb.append("*/\n");
+        }
+        return sb.toString();
+    }
+
+    private static int maxErr(Map<Option, String> options) {
+        try {
+            String value = options.get(Option.MAXERR);
+            return value == null ? DEFAULT_MAXERR : Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return DEFAULT_MAXERR;
+        }
+    }
+
+    private static int countLines(String s) {
+        int lines = 0;
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    /** The offset at which each line starts. */
+    private static int[] lineStarts(String source) {
+        int[] starts = new int[countLines(source) + 1];
+        int line = 1;
+        for (int i = 0; i < source.length(); i++) {
+            if (source.charAt(i) == '\n') {
+                starts[line++] = i + 1;
+            }
+        }
+        return starts;
+    }
+
+    /**
+     * Split {@code source} into chunks of at least {@code minLines} lines, at the ends of lines
+     * where a top level statement ends and the next line doesn't carry it on. This only has to
+     * understand enough JavaScript to find the top level: comments, strings, regular expressions
+     * and brackets. If it gets confused, the worst that happens is one big chunk.
+     */
+    static List<Chunk> split(String source, int minLines) {
+        List<Chunk> chunks = new ArrayList<Chunk>();
+        Set<String> directiveNames = new HashSet<String>();
+        List<String> names = new ArrayList<String>();
+        List<String> directives = new ArrayList<String>();
+        int n = source.length();
+        int line = 0;
+        int chunkStart = 0;
+        int depth = 0;
+        // The last significant character, and the word it ended, if any.
+        char lastChar = 0;
+        String lastWord = null;
+        // Whether the last token could end a statement, going by semicolon insertion, and the
+        // line after which the statement ended, if the next token doesn't carry it on.
+        boolean canEnd = false;
+        int candidateLine = -1;
+        // Whether the statement ended explicitly, so that JSLint won't look beyond it, and the
+        // first word of the current statement.
+        boolean explicitEnd = false;
+        boolean splittable = false;
+        String statementWord = null;
+        // Inside the parentheses after if, for, while or with at the top level.
+        boolean headerWord = false;
+        boolean inHeader = false;
+        boolean inVar = false;
+        boolean expectName = false;
+        boolean expectFunctionName = false;
+        // The statement on the line before ended, so a new one starts here.
+        boolean newStatement = false;
+        int i = 0;
+        while (i < n) {
+            char c = source.charAt(i);
+            if (c == '\n') {
+                if (canEnd && depth == 0) {
+                    candidateLine = line + 1;
+                    splittable = explicitEnd;
+                }
+                line++;
+                i++;
+                continue;
+            }
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            if (c == '/' && i + 1 < n && source.charAt(i + 1) == '/') {
+                while (i < n && source.charAt(i) != '\n') {
+                    i++;
+                }
+                continue;
+            }
+            if (c == '/' && i + 1 < n && source.charAt(i + 1) == '*') {
+                int end = source.indexOf("*/", i + 2);
+                end = end < 0 ? n : end + 2;
+                String comment = source.substring(i, end);
+                if (depth == 0 && isDirective(comment)) {
+                    if (candidateLine >= 0) {
+                        // A directive belongs with what follows it.
+                        if (splittable && candidateLine - chunkStart >= minLines) {
+                            chunks.add(new Chunk(chunkStart, candidateLine, names, directives));
+                            chunkStart = candidateLine;
+                            names = new ArrayList<String>();
+                            directives = new ArrayList<String>();
+                        }
+                        candidateLine = -1;
+                    }
+                    directives.add(comment);
+                    if (comment.startsWith("/*global")) {
+                        directiveNames.addAll(directiveNames(comment));
+                    }
+                }
+                for (int j = i; j < end; j++) {
+                    if (source.charAt(j) == '\n') {
+                        line++;
+                    }
+                }
+                i = end;
+                continue;
+            }
+
+            // Something significant. Does it carry on a statement from an earlier line?
+            String word = null;
+            if (Character.isJavaIdentifierStart(c)) {
+                int start = i;
+                while (i < n && Character.isJavaIdentifierPart(source.charAt(i))) {
+                    i++;
+                }
+                word = source.substring(start, i);
+                i = start;
+            }
+            if (candidateLine >= 0) {
+                boolean continues = word == null ? ".,([{?:+-*/%&|^=<>!".indexOf(c) >= 0
+                        : CONTINUATION_WORDS.contains(word);
+                if (!continues && splittable && candidateLine - chunkStart >= minLines) {
+                    chunks.add(new Chunk(chunkStart, candidateLine, names, directives));
+                    chunkStart = candidateLine;
+                    names = new ArrayList<String>();
+                    directives = new ArrayList<String>();
+                }
+                if (!continues) {
+                    inVar = false;
+                    newStatement = true;
+                }
+                candidateLine = -1;
+            }
+
+            boolean statementStart = depth == 0 && (newStatement || lastChar == 0
+                    || (lastWord == null && (lastChar == ';' || lastChar == '}')));
+            if (statementStart) {
+                statementWord = word;
+            }
+            explicitEnd = false;
+            if (word != null) {
+                newStatement = false;
+                if (depth == 0 && (expectName || expectFunctionName)) {
+                    if (!directiveNames.contains(word) && !names.contains(word)) {
+                        names.add(word);
+                    }
+                    expectName = false;
+                    expectFunctionName = false;
+                } else if (statementStart && word.equals("var")) {
+                    inVar = true;
+                    expectName = true;
+                } else if (statementStart && word.equals("function")) {
+                    expectFunctionName = true;
+                } else {
+                    expectFunctionName = false;
+                }
+                i += word.length();
+                canEnd = !UNFINISHED_WORDS.contains(word);
+                headerWord = depth == 0 && HEADER_WORDS.contains(word);
+                lastChar = word.charAt(word.length() - 1);
+                lastWord = word;
+                continue;
+            }
+            canEnd = true;
+            if (c == '"' || c == '\'') {
+                i++;
+                while (i < n && source.charAt(i) != c && source.charAt(i) != '\n') {
+                    i += source.charAt(i) == '\\' ? 2 : 1;
+                }
+                i++;
+            } else if (c >= '0' && c <= '9') {
+                while (i < n && (Character.isLetterOrDigit(source.charAt(i))
+                        || source.charAt(i) == '.')) {
+                    i++;
+                }
+            } else if (c == '/' && startsRegExp(lastChar, lastWord)) {
+                i = skipRegExp(source, i);
+            } else {
+                canEnd = c == ']' || c == '}' || c == ';';
+                if (c == '(' || c == '[' || c == '{') {
+                    inHeader = inHeader || (headerWord && c == '(');
+                    depth++;
+                } else if (c == ')' || c == ']' || c == '}') {
+                    depth = Math.max(0, depth - 1);
+                    // The statement controlled by a header is still to come.
+                    canEnd = canEnd || (c == ')' && !(inHeader && depth == 0));
+                    inHeader = inHeader && depth > 0;
+                    explicitEnd = depth == 0 && c == '}' && BLOCK_WORDS.contains(statementWord);
+                } else if (c == ';' && depth == 0) {
+                    explicitEnd = true;
+                    inVar = false;
+                    expectName = false;
+                } else if (c == ',' && depth == 0 && inVar) {
+                    expectName = true;
+                }
+                expectFunctionName = false;
+                i++;
+            }
+            headerWord = false;
+            newStatement = false;
+            lastChar = c;
+            lastWord = null;
+        }
+        int lines = line + 1;
+        if (chunkStart < lines) {
+            chunks.add(new Chunk(chunkStart, lines, names, directives));
+        }
+        return chunks;
+    }
+
+    private static boolean isDirective(String comment) {
+        for (String directive : DIRECTIVES) {
+            if (comment.startsWith(directive)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** The names declared by a <i>/*global</i> comment. */
+    private static Set<String> directiveNames(String comment) {
+        Set<String> names = new LinkedHashSet<String>();
+        String body = comment.substring("/*global".length(), comment.length() - 2);
+        for (String item : body.split(",")) {
+            String name = item.split(":")[0].trim();
+            if (name.length() > 0) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+
+    private static boolean startsRegExp(char lastChar, String lastWord) {
+        if (lastWord != null) {
+            return REGEXP_PREFIX_WORDS.contains(lastWord);
+        }
+        return lastChar == 0 || "(,=:[!&|?{};+-*%<>~^".indexOf(lastChar) >= 0;
+    }
+
+    /** Return the offset just after the regular expression starting at {@code start}. */
+    private static int skipRegExp(String source, int start) {
+        int i = start + 1;
+        boolean inClass = false;
+        while (i < source.length()) {
+            char c = source.charAt(i);
+            if (c == '\n') {
+                return i;
+            } else if (c == '\\') {
+                i++;
+            } else if (c == '[') {
+                inClass = true;
+            } else if (c == ']') {
+                inClass = false;
+            } else if (c == '/' && !inClass) {
+                i++;
+                break;
+            }
+            i++;
+        }
+        while (i < source.length() && Character.isJavaIdentifierPart(source.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+}
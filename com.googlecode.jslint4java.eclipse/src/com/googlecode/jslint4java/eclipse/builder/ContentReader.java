@@ -0,0 +1,175 @@
+package com.googlecode.jslint4java.eclipse.builder;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+
+/**
+ * Read files for linting while creating as little garbage as possible. Byte and char buffers are
+ * kept between files and only grown when needed, and there is one decoder per charset. Files
+ * which exist on the local filesystem are read through a {@link FileChannel} instead of
+ * {@link IFile#getContents()}. They aren't memory mapped: on Windows, a mapped file can't be
+ * saved over, renamed or deleted until the mapping is garbage collected.
+ * <p>
+ * Each worker thread should have its own instance. The buffer returned by {@link #read(IFile)} is
+ * only valid until the next call.
+ */
+class ContentReader {
+
+    /** A byte buffer bigger than this is only used for the file which needed it. */
+    private static final int MAX_RETAINED_SIZE = 4 * 1024 * 1024;
+
+    private static final int INITIAL_SIZE = 64 * 1024;
+
+    private final ReadCounters counters;
+
+    private ByteBuffer bytes = ByteBuffer.allocate(INITIAL_SIZE);
+    private CharBuffer chars = CharBuffer.allocate(INITIAL_SIZE);
+    private final Map<String, CharsetDecoder> decoders = new HashMap<String, CharsetDecoder>();
+
+    ContentReader(ReadCounters counters) {
+        this.counters = counters;
+    }
+
+    /**
+     * Return the raw contents of {@code file}, between the buffer's position and limit.
+     */
+    public ByteBuffer read(IFile file) throws CoreException, IOException {
+        long allocatedBefore = ReadCounters.allocatedBytes();
+        ByteBuffer content;
+        IPath location = file.getLocation();
+        File local = location == null ? null : location.toFile();
+        if (local != null && local.isFile()) {
+            content = readLocal(local);
+        } else {
+            content = readStream(file.getContents());
+        }
+        counters.read(content.remaining(), allocatedBefore);
+        return content;
+    }
+
+    /**
+     * Decode {@code content} using {@code charset}. Malformed input is replaced, as
+     * {@link java.io.InputStreamReader} would.
+     */
+    public String decode(ByteBuffer content, String charset) throws CharacterCodingException {
+        long allocatedBefore = ReadCounters.allocatedBytes();
+        CharsetDecoder decoder = decoder(charset);
+        int maxChars = (int) (content.remaining() * (double) decoder.maxCharsPerByte()) + 1;
+        CharBuffer out = chars(maxChars);
+        CoderResult result = decoder.decode(content, out, true);
+        if (result.isError()) {
+            result.throwException();
+        }
+        decoder.flush(out);
+        out.flip();
+        String text = out.toString();
+        counters.decoded(allocatedBefore);
+        return text;
+    }
+
+    private ByteBuffer readLocal(File local) throws IOException {
+        FileInputStream in = new FileInputStream(local);
+        try {
+            FileChannel channel = in.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(local + " is too large to lint");
+            }
+            ByteBuffer buf = bytes((int) size);
+            while (buf.hasRemaining() && channel.read(buf) >= 0) {
+                // Keep reading.
+            }
+            buf.flip();
+            return buf;
+        } finally {
+            close(in);
+        }
+    }
+
+    private ByteBuffer readStream(InputStream in) throws IOException {
+        try {
+            ByteBuffer buf = bytes(INITIAL_SIZE);
+            int n;
+            while ((n = in.read(buf.array(), buf.position(), buf.remaining())) != -1) {
+                buf.position(buf.position() + n);
+                if (!buf.hasRemaining()) {
+                    buf = grow(buf);
+                }
+            }
+            buf.flip();
+            return buf;
+        } finally {
+            close(in);
+        }
+    }
+
+    /**
+     * Return our byte buffer, cleared, with room for at least {@code size} bytes. Rather than
+     * hang on to a huge buffer for the rest of the build, one is allocated just this once.
+     */
+    private ByteBuffer bytes(int size) {
+        if (size > MAX_RETAINED_SIZE) {
+            return ByteBuffer.allocate(size);
+        }
+        if (bytes.capacity() < size) {
+            bytes = ByteBuffer.allocate(size);
+        }
+        bytes.clear();
+        return bytes;
+    }
+
+    /** Double the size of our byte buffer, keeping what's in it. */
+    private ByteBuffer grow(ByteBuffer buf) {
+        ByteBuffer bigger = ByteBuffer.allocate(buf.capacity() * 2);
+        buf.flip();
+        bigger.put(buf);
+        if (bigger.capacity() <= MAX_RETAINED_SIZE) {
+            bytes = bigger;
+        }
+        return bigger;
+    }
+
+    /** Return our char buffer, cleared, with room for at least {@code size} chars. */
+    private CharBuffer chars(int size) {
+        if (chars.capacity() < size) {
+            chars = CharBuffer.allocate(size);
+        }
+        chars.clear();
+        return chars;
+    }
+
+    private CharsetDecoder decoder(String charset) {
+        CharsetDecoder decoder = decoders.get(charset);
+        if (decoder == null) {
+            decoder = Charset.forName(charset).newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            decoders.put(charset, decoder);
+        }
+        return decoder.reset();
+    }
+
+    private void close(Closeable close) {
+        try {
+            close.close();
+        } catch (IOException e) {
+        }
+    }
+}
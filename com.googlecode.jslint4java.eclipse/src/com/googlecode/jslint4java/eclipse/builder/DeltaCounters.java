@@ -0,0 +1,51 @@
+package com.googlecode.jslint4java.eclipse.builder;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Count what incremental builds did with the resource deltas they were given. These are
+ * cumulative across all projects since the plugin started, or since {@link LintMetrics#reset()}.
+ */
+public class DeltaCounters {
+
+    private final AtomicLong contentChanges = new AtomicLong();
+    private final AtomicLong skippedDeltas = new AtomicLong();
+    private final AtomicLong prunedSubtrees = new AtomicLong();
+
+    /** How many JavaScript files were queued for linting because their content changed. */
+    public long getContentChanges() {
+        return contentChanges.get();
+    }
+
+    /**
+     * How many changed JavaScript files were not linted, because only their markers, sync info
+     * or similar changed.
+     */
+    public long getSkippedDeltas() {
+        return skippedDeltas.get();
+    }
+
+    /** How many subtrees were not visited at all. */
+    public long getPrunedSubtrees() {
+        return prunedSubtrees.get();
+    }
+
+    /** Start counting again from zero. */
+    void reset() {
+        contentChanges.set(0);
+        skippedDeltas.set(0);
+        prunedSubtrees.set(0);
+    }
+
+    void contentChanged() {
+        contentChanges.incrementAndGet();
+    }
+
+    void deltaSkipped() {
+        skippedDeltas.incrementAndGet();
+    }
+
+    void subtreePruned() {
+        prunedSubtrees.incrementAndGet();
+    }
+}
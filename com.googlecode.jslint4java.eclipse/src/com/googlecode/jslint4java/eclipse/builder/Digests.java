@@ -0,0 +1,64 @@
+package com.googlecode.jslint4java.eclipse.builder;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Compute hex encoded SHA-1 digests, for when we need to know whether some content has changed.
+ */
+final class Digests {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private Digests() {
+    }
+
+    /** Return the digest of {@code bytes}. */
+    static String sha1(byte[] bytes) {
+        return sha1(bytes, 0, bytes.length);
+    }
+
+    /** Return the digest of {@code length} bytes of {@code bytes}, starting at {@code offset}. */
+    static String sha1(byte[] bytes, int offset, int length) {
+        MessageDigest md = newDigest();
+        md.update(bytes, offset, length);
+        return toHex(md.digest());
+    }
+
+    /** Return the digest of the remaining bytes in {@code buffer}, which will be consumed. */
+    static String sha1(ByteBuffer buffer) {
+        MessageDigest md = newDigest();
+        md.update(buffer);
+        return toHex(md.digest());
+    }
+
+    /** Return the digest of the UTF-8 encoding of {@code s}. */
+    static String sha1(String s) {
+        try {
+            return sha1(s.getBytes("UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            // Can't happen; UTF-8 is always available.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            // Can't happen; every JVM has to provide SHA-1.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] digest) {
+        char[] out = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            out[i * 2] = HEX[(digest[i] >> 4) & 0xf];
+            out[i * 2 + 1] = HEX[digest[i] & 0xf];
+        }
+        return new String(out);
+    }
+}
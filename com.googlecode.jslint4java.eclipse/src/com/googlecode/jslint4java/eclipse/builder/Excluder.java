@@ -1,10 +1,11 @@
 package com.googlecode.jslint4java.eclipse.builder;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.regex.Pattern;
 
 import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.preferences.IEclipsePreferences;
 import org.eclipse.core.runtime.preferences.IEclipsePreferences.IPreferenceChangeListener;
@@ -17,55 +18,80 @@ import com.googlecode.jslint4java.eclipse.JSLintPlugin;
 /**
  * Maintain the list of paths to exclude from linting. Will be automatically
  * updated when the prefs value changes.
+ * <p>
+ * The patterns are compiled into an immutable {@link ExclusionMatcher}, which is swapped in
+ * whole when the preference changes, so a build in progress never sees a half updated list.
  */
 public class Excluder {
     public static final String EXCLUDE_PATH_REGEXES_PREFERENCE = "exclude_path_regexes";
 
-    private final List<Pattern> excludes = new ArrayList<Pattern>();
+    /** Told when the user changes the patterns. */
+    public interface ExclusionListener {
+        void exclusionsChanged(ExclusionMatcher before, ExclusionMatcher after);
+    }
+
+    private final List<ExclusionListener> exclusionListeners =
+            new CopyOnWriteArrayList<ExclusionListener>();
+
+    private volatile ExclusionMatcher matcher = ExclusionMatcher.NONE;
+
+    private final IPreferenceChangeListener listener = new IPreferenceChangeListener() {
+        public void preferenceChange(PreferenceChangeEvent ev) {
+            if (ev.getKey().equals(EXCLUDE_PATH_REGEXES_PREFERENCE)) {
+                ExclusionMatcher before = matcher;
+                parsePref((String) ev.getNewValue());
+                for (ExclusionListener l : exclusionListeners) {
+                    l.exclusionsChanged(before, matcher);
+                }
+            }
+        }
+    };
 
     public void init() {
         readPref();
         monitor();
     }
 
+    /** Stop following changes to the preference. */
+    public void dispose() {
+        IEclipsePreferences scope = InstanceScope.INSTANCE.getNode(JSLintPlugin.PLUGIN_ID);
+        scope.removePreferenceChangeListener(listener);
+    }
+
+    /** Tell {@code l} whenever the patterns change. */
+    public void addExclusionListener(ExclusionListener l) {
+        exclusionListeners.add(l);
+    }
+
+    public void removeExclusionListener(ExclusionListener l) {
+        exclusionListeners.remove(l);
+    }
+
     /** Return the list of patterns to exclude from linting. */
     public List<Pattern> getExcludes() {
-        return new ArrayList<Pattern>(excludes);
+        return matcher.toRegexes();
     }
 
     /** Should {@code file} be excluded from linting? */
     public boolean isExcluded(IFile file) {
-        String filePath = file.getFullPath().toString();
-        if (!excludes.isEmpty()) {
-            for (Pattern p : excludes) {
-                if (p.matcher(filePath).find()) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return matcher.isExcluded(file.getFullPath().toString());
+    }
+
+    /**
+     * Is everything inside the folder at {@code path} excluded from linting, so that it doesn't
+     * need visiting?
+     */
+    public boolean isExcludedFolder(IPath path) {
+        return matcher.isExcludedFolder(path.toString());
     }
 
     private void monitor() {
         IEclipsePreferences scope = InstanceScope.INSTANCE.getNode(JSLintPlugin.PLUGIN_ID);
-        scope.addPreferenceChangeListener(new IPreferenceChangeListener() {
-            public void preferenceChange(PreferenceChangeEvent ev) {
-                if (ev.getKey().equals(EXCLUDE_PATH_REGEXES_PREFERENCE)) {
-                    parsePref((String) ev.getNewValue());
-                }
-            }
-        });
+        scope.addPreferenceChangeListener(listener);
     }
 
     private void parsePref(String pref) {
-        excludes.clear();
-        if (pref.isEmpty()) {
-            return;
-        }
-        for (String path : pref.split(",")) {
-            excludes.add(Pattern.compile(path));
-        }
-
+        matcher = ExclusionMatcher.parse(pref);
     }
 
     private void readPref() {
@@ -0,0 +1,339 @@
+package com.googlecode.jslint4java.eclipse.builder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * An immutable, compiled set of exclusion patterns, matched against workspace paths such as
+ * <i>/project/lib/jquery.js</i>. Each pattern is either a regex (found anywhere in the path, as
+ * before), or a glob if it starts with <i>glob:</i>. In a glob, <i>**</i> matches any number of
+ * directories, <i>*</i> and <i>?</i> match within a single path segment, and a glob which doesn't
+ * start with <i>/</i> may match at any depth.
+ * <p>
+ * Checking every pattern against every path is slow when there are lots of patterns, so they
+ * are compiled into:
+ * <ul>
+ * <li>A trie of directory prefixes, for globs like <i>/project/lib/**</i>.
+ * <li>A set of directory names, for globs like <i>**&#47;node_modules/**</i>.
+ * <li>A regex for everything else, along with some literal text that any match must contain.
+ *     The regex is only tried on paths that contain the literal, which is much quicker to check.
+ *     (Combining the regexes into one alternation is slower, as it defeats the regex engine's own
+ *     search for a literal prefix.)
+ * </ul>
+ * The first two also allow whole folders to be excluded, see {@link #isExcludedFolder(String)}.
+ */
+public class ExclusionMatcher {
+
+    private static final String GLOB_PREFIX = "glob:";
+
+    /**
+     * The letters which make an escape of just two characters, none of which are literal text for
+     * {@link #requiredLiteral(String)}.
+     */
+    private static final String SIMPLE_ESCAPES = "dDsSwWbBAGZzhHvVRXtnrfea";
+
+    /** Embedded flags, like <i>(?i)</i>, which might change what a literal matches. */
+    private static final Pattern EMBEDDED_FLAGS = Pattern.compile("\\(\\?[a-zA-Z-]");
+
+    /** An empty matcher, which excludes nothing. */
+    public static final ExclusionMatcher NONE = new ExclusionMatcher(Collections
+            .<String> emptyList());
+
+    /** A regex, and some literal text which must be in anything that it finds. */
+    private static class Regex {
+        private final Pattern pattern;
+        private final String literal;
+
+        Regex(String regex) {
+            this.pattern = Pattern.compile(regex);
+            this.literal = requiredLiteral(regex);
+        }
+
+        boolean find(String path) {
+            return (literal == null || path.contains(literal)) && pattern.matcher(path).find();
+        }
+    }
+
+    /** A node in the trie of excluded directory prefixes. */
+    private static class Node {
+        private final Map<String, Node> children = new HashMap<String, Node>();
+        private boolean excluded;
+
+        Node child(String segment) {
+            Node child = children.get(segment);
+            if (child == null) {
+                child = new Node();
+                children.put(segment, child);
+            }
+            return child;
+        }
+    }
+
+    private final List<String> patterns;
+    private final Node prefixes = new Node();
+    private final Set<String> directoryNames = new HashSet<String>();
+    private final List<Regex> regexes = new ArrayList<Regex>();
+
+    /** Compile {@code patterns}, which are as described above. */
+    public ExclusionMatcher(List<String> patterns) {
+        this.patterns = Collections.unmodifiableList(new ArrayList<String>(patterns));
+        for (String pattern : patterns) {
+            if (pattern.startsWith(GLOB_PREFIX)) {
+                addGlob(pattern.substring(GLOB_PREFIX.length()));
+            } else {
+                regexes.add(new Regex(pattern));
+            }
+        }
+    }
+
+    /** Parse a comma separated list of patterns, as stored in the preferences. */
+    public static ExclusionMatcher parse(String pref) {
+        List<String> patterns = new ArrayList<String>();
+        if (pref != null) {
+            for (String pattern : pref.split(",")) {
+                if (pattern.length() > 0) {
+                    patterns.add(pattern);
+                }
+            }
+        }
+        return new ExclusionMatcher(patterns);
+    }
+
+    /** Return the patterns this matcher was made from. */
+    public List<String> getPatterns() {
+        return patterns;
+    }
+
+    /** Return a regex equivalent to each pattern. */
+    public List<Pattern> toRegexes() {
+        List<Pattern> result = new ArrayList<Pattern>(patterns.size());
+        for (String pattern : patterns) {
+            if (pattern.startsWith(GLOB_PREFIX)) {
+                result.add(Pattern.compile(globToRegex(pattern.substring(GLOB_PREFIX.length()))));
+            } else {
+                result.add(Pattern.compile(pattern));
+            }
+        }
+        return result;
+    }
+
+    /** Does this matcher exclude nothing at all? */
+    public boolean isEmpty() {
+        return patterns.isEmpty();
+    }
+
+    /** Should the file at {@code path} be excluded from linting? */
+    public boolean isExcluded(String path) {
+        if (isEmpty()) {
+            return false;
+        }
+        if (inExcludedDirectory(path, false)) {
+            return true;
+        }
+        for (Regex regex : regexes) {
+            if (regex.find(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Is everything in the folder at {@code path} excluded, so that it needn't be visited at all?
+     * This only knows about directory globs, so a false answer doesn't mean that nothing inside
+     * is excluded.
+     */
+    public boolean isExcludedFolder(String path) {
+        return !isEmpty() && inExcludedDirectory(path, true);
+    }
+
+    /**
+     * Walk {@code path} through the trie and the set of directory names. The last segment of a
+     * file's path is its name, so it only counts if {@code isFolder}.
+     */
+    private boolean inExcludedDirectory(String path, boolean isFolder) {
+        String[] segments = segments(path);
+        int directories = isFolder ? segments.length : segments.length - 1;
+        Node node = prefixes;
+        for (int i = 0; i < directories; i++) {
+            if (node != null) {
+                node = node.children.get(segments[i]);
+                if (node != null && node.excluded) {
+                    return true;
+                }
+            }
+            if (directoryNames.contains(segments[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Work out which structure a glob belongs in. */
+    private void addGlob(String glob) {
+        if (glob.endsWith("/**")) {
+            String dir = glob.substring(0, glob.length() - 3);
+            if (dir.startsWith("/") && isLiteral(dir)) {
+                Node node = prefixes;
+                for (String segment : segments(dir)) {
+                    node = node.child(segment);
+                }
+                node.excluded = true;
+                return;
+            }
+            String name = dir.startsWith("**/") ? dir.substring(3) : dir;
+            if (isLiteral(name) && name.length() > 0 && name.indexOf('/') == -1) {
+                directoryNames.add(name);
+                return;
+            }
+        }
+        regexes.add(new Regex(globToRegex(glob)));
+    }
+
+    private static boolean isLiteral(String glob) {
+        return glob.indexOf('*') == -1 && glob.indexOf('?') == -1;
+    }
+
+    private static String[] segments(String path) {
+        String trimmed = path.startsWith("/") ? path.substring(1) : path;
+        return trimmed.length() == 0 ? new String[0] : trimmed.split("/");
+    }
+
+    /**
+     * Return the longest literal text that anything {@code regex} finds must contain, or null if
+     * we can't tell. Only the top level of the regex is considered, as anything inside a group
+     * may be optional, and regexes containing alternation or embedded flags are given up on.
+     */
+    static String requiredLiteral(String regex) {
+        if (regex.indexOf('|') != -1 || EMBEDDED_FLAGS.matcher(regex).find()) {
+            return null;
+        }
+        String longest = "";
+        StringBuilder run = new StringBuilder();
+        int depth = 0;
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            char literal = 0;
+            if (c == '\\' && i + 1 < regex.length()) {
+                char next = regex.charAt(++i);
+                if (Character.isLetterOrDigit(next)) {
+                    if (SIMPLE_ESCAPES.indexOf(next) == -1) {
+                        // Quoting (\Q), or something followed by more than one character
+                        // (\x41, \u0041, \p{L}, \k<name>, \12); not worth the bother.
+                        return null;
+                    }
+                    // A character class (\d), boundary (\b) or control character (\t).
+                    if (depth == 0) {
+                        longest = longer(longest, run);
+                    }
+                    run.setLength(0);
+                    continue;
+                }
+                literal = next;
+            } else if (c == '[') {
+                i = endOfClass(regex, i);
+                if (i == -1) {
+                    return null;
+                }
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == '*' || c == '?' || c == '{') {
+                // The previous character was optional after all.
+                if (run.length() > 0) {
+                    run.setLength(run.length() - 1);
+                }
+                if (c == '{') {
+                    i = regex.indexOf('}', i);
+                    if (i == -1) {
+                        return null;
+                    }
+                }
+            } else if (c != '.' && c != '^' && c != '$' && c != '+') {
+                literal = c;
+            }
+            if (literal != 0 && depth == 0) {
+                run.append(literal);
+            } else {
+                if (depth == 0 || c == '(') {
+                    longest = longer(longest, run);
+                }
+                run.setLength(0);
+            }
+        }
+        longest = longer(longest, run);
+        return longest.length() == 0 ? null : longest;
+    }
+
+    /**
+     * Return the index of the ']' closing the character class opened at {@code start}, counting
+     * any classes nested in it (unions and intersections, as in {@code [a[b]]}), or -1 if it
+     * isn't closed. A ']' straight after a '[' or '[^' is literal, as it is to {@link Pattern}.
+     */
+    private static int endOfClass(String regex, int start) {
+        int nesting = 0;
+        for (int i = start; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '[') {
+                nesting++;
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == '^') {
+                    i++;
+                }
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == ']') {
+                    i++;
+                }
+            } else if (c == ']' && --nesting == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String longer(String longest, StringBuilder run) {
+        return run.length() > longest.length() ? run.toString() : longest;
+    }
+
+    /** Convert a glob to an equivalent regex, anchored to the whole path. */
+    static String globToRegex(String glob) {
+        StringBuilder sb = new StringBuilder("^");
+        if (!glob.startsWith("/")) {
+            // Unanchored: may match at any depth.
+            sb.append("(?:.*/)?");
+        }
+        int i = glob.startsWith("/") ? 1 : 0;
+        if (i == 1) {
+            sb.append('/');
+        }
+        while (i < glob.length()) {
+            char c = glob.charAt(i);
+            if (glob.startsWith("**/", i)) {
+                sb.append("(?:.*/)?");
+                i += 3;
+                continue;
+            } else if (glob.startsWith("**", i)) {
+                sb.append(".*");
+                i += 2;
+                continue;
+            } else if (c == '*') {
+                sb.append("[^/]*");
+            } else if (c == '?') {
+                sb.append("[^/]");
+            } else if ("\\.[]{}()+-^$|".indexOf(c) != -1) {
+                sb.append('\\').append(c);
+            } else {
+                sb.append(c);
+            }
+            i++;
+        }
+        return sb.append('$').toString();
+    }
+}
@@ -0,0 +1,747 @@
+package com.googlecode.jslint4java.eclipse.builder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.mozilla.javascript.CompilerEnvirons;
+import org.mozilla.javascript.Node;
+import org.mozilla.javascript.Parser;
+import org.mozilla.javascript.RhinoException;
+import org.mozilla.javascript.Token;
+import org.mozilla.javascript.ast.AstNode;
+import org.mozilla.javascript.ast.AstRoot;
+import org.mozilla.javascript.ast.BreakStatement;
+import org.mozilla.javascript.ast.CatchClause;
+import org.mozilla.javascript.ast.Comment;
+import org.mozilla.javascript.ast.ContinueStatement;
+import org.mozilla.javascript.ast.ErrorCollector;
+import org.mozilla.javascript.ast.ExpressionStatement;
+import org.mozilla.javascript.ast.FunctionNode;
+import org.mozilla.javascript.ast.InfixExpression;
+import org.mozilla.javascript.ast.Loop;
+import org.mozilla.javascript.ast.Name;
+import org.mozilla.javascript.ast.NodeVisitor;
+import org.mozilla.javascript.ast.ObjectProperty;
+import org.mozilla.javascript.ast.ParseProblem;
+import org.mozilla.javascript.ast.PropertyGet;
+import org.mozilla.javascript.ast.RegExpLiteral;
+import org.mozilla.javascript.ast.ReturnStatement;
+import org.mozilla.javascript.ast.StringLiteral;
+import org.mozilla.javascript.ast.ThrowStatement;
+import org.mozilla.javascript.ast.VariableDeclaration;
+import org.mozilla.javascript.ast.VariableInitializer;
+
+import com.googlecode.jslint4java.Issue;
+import com.googlecode.jslint4java.JSLintResult;
+import com.googlecode.jslint4java.Option;
+
+/**
+ * A quick subset of JSLint's checks, made on the syntax tree from Rhino's parser rather than by
+ * running <i>jslint.js</i>. It finds:
+ * <ul>
+ * <li> syntax errors, in Rhino's words, and missing semicolons;
+ * <li> functions missing <i>"use strict"</i>, unless {@link Option#SLOPPY};
+ * <li> {@code ==} and {@code !=}, unless {@link Option#EQEQ};
+ * <li> names used before they're defined; {@link Option#UNDEF} only lets that pass outside
+ * strict code, as <i>"use strict"</i> turns it off for the rest of the function;
+ * <li> missing or unexpected spaces next to operators, commas, semicolons and parentheses, and
+ * trailing spaces, unless {@link Option#WHITE}.
+ * </ul>
+ * These are reported in the same words and at the same places as JSLint would, so the markers
+ * look the same. Most of JSLint's other checks are missing, so this is for quick feedback while
+ * editing, with JSLint itself run by a full or headless build. The browser, devel, node, rhino,
+ * widget and windows options, {@link Option#PREDEF}, {@link Option#MAXERR} and
+ * {@link Option#PASSFAIL} are honoured, as are <i>/*jslint</i> and <i>/*global</i> comments,
+ * although those apply to the whole file rather than from where they are.
+ * <p>
+ * Rhino's parser doesn't count instructions, so the {@link LintWatchdog} can't stop it; but it
+ * takes a fraction of the time that JSLint does.
+ */
+public class FastLintEngine implements LintEngine {
+
+    private static final String USED_BEFORE_DEFINED = "'{a}' was used before it was defined.";
+    private static final String EXPECTED_A_B = "Expected '{a}' and instead saw '{b}'.";
+    private static final String MISSING_USE_STRICT = "Missing 'use strict' statement.";
+    private static final String FUNCTION_STRICT = "Use the function form of 'use strict'.";
+    private static final String MISSING_SPACE = "Missing space between '{a}' and '{b}'.";
+    private static final String UNEXPECTED_SPACE = "Unexpected space between '{a}' and '{b}'.";
+    private static final String EXPECTED_ONE_SPACE =
+            "Expected exactly one space between '{a}' and '{b}'.";
+    private static final String UNEXPECTED_A = "Unexpected '{a}'.";
+    /** JSLint's own default for {@link Option#MAXERR}. */
+    private static final int DEFAULT_MAXERR = 50;
+
+    /** JSLint's default for {@link Option#INDENT}, which is also how wide it takes tabs to be. */
+    private static final int DEFAULT_INDENT = 4;
+
+    /** The global names provided by ECMAScript, as JSLint has them. */
+    private static final Set<String> STANDARD = names("Array", "Boolean", "Date", "decodeURI",
+            "decodeURIComponent", "encodeURI", "encodeURIComponent", "Error", "eval",
+            "EvalError", "Function", "isFinite", "isNaN", "JSON", "Math", "Number", "Object",
+            "parseInt", "parseFloat", "RangeError", "ReferenceError", "RegExp", "String",
+            "SyntaxError", "TypeError", "URIError", "undefined", "NaN", "Infinity",
+            "arguments");
+
+    /** The names each environment option predefines, taken from <i>jslint.js</i>. */
+    private static final Map<Option, Set<String>> ENVIRONMENTS =
+            new EnumMap<Option, Set<String>>(Option.class);
+    static {
+        ENVIRONMENTS.put(Option.BROWSER, names("clearInterval", "clearTimeout", "document",
+                "event", "frames", "history", "Image", "localStorage", "location", "name",
+                "navigator", "Option", "parent", "screen", "sessionStorage", "setInterval",
+                "setTimeout", "Storage", "window", "XMLHttpRequest"));
+        ENVIRONMENTS.put(Option.DEVEL, names("alert", "confirm", "console", "Debug", "opera",
+                "prompt", "WSH"));
+        ENVIRONMENTS.put(Option.NODE, names("Buffer", "clearInterval", "clearTimeout",
+                "console", "exports", "global", "module", "process", "querystring", "require",
+                "setInterval", "setTimeout", "__dirname", "__filename"));
+        ENVIRONMENTS.put(Option.RHINO, names("defineClass", "deserialize", "gc", "help", "load",
+                "loadClass", "print", "quit", "readFile", "readUrl", "runCommand", "seal",
+                "serialize", "spawn", "sync", "toint32", "version"));
+        ENVIRONMENTS.put(Option.WIDGET, names("alert", "animator", "appleScript", "beep",
+                "bytesToUIString", "Canvas", "chooseColor", "chooseFile", "chooseFolder",
+                "closeWidget", "COM", "convertPathToHFS", "convertPathToPlatform",
+                "CustomAnimation", "escape", "FadeAnimation", "filesystem", "Flash",
+                "focusWidget", "form", "FormField", "Frame", "HotKey", "Image", "include",
+                "isApplicationRunning", "iTunes", "konfabulatorVersion", "log", "md5",
+                "MenuItem", "MoveAnimation", "openURL", "play", "Point", "popupMenu",
+                "preferenceGroups", "preferences", "print", "prompt", "random", "Rectangle",
+                "reloadWidget", "ResizeAnimation", "resolvePath", "resumeUpdates",
+                "RotateAnimation", "runCommand", "runCommandInBg", "saveAs", "savePreferences",
+                "screen", "ScrollBar", "showWidgetPreferences", "sleep", "speak", "Style",
+                "suppressUpdates", "system", "tellWidget", "Text", "TextArea", "Timer",
+                "unescape", "updateNow", "URL", "Web", "widget", "Window", "XMLDOM",
+                "XMLHttpRequest", "yahooCheckLogin", "yahooLogin", "yahooLogout"));
+        ENVIRONMENTS.put(Option.WINDOWS, names("ActiveXObject", "CScript", "Debug",
+                "Enumerator", "System", "VBArray", "WScript", "WSH"));
+    }
+
+    /**
+     * Keywords which should be followed by exactly one space and a parenthesis, as should
+     * <i>function</i> when it has no name.
+     */
+    private static final Set<String> PAREN_KEYWORDS = names("if", "for", "while", "switch",
+            "catch", "with");
+
+    /** Keywords which should be followed by exactly one space and a brace. */
+    private static final Set<String> BRACE_KEYWORDS = names("else", "try", "finally", "do");
+
+    /** JSLint reports issues in the order it comes across them. */
+    private static final Comparator<Issue> SOURCE_ORDER = new Comparator<Issue>() {
+        public int compare(Issue a, Issue b) {
+            if (a.getLine() != b.getLine()) {
+                return a.getLine() < b.getLine() ? -1 : 1;
+            }
+            return a.getCharacter() < b.getCharacter() ? -1
+                    : a.getCharacter() == b.getCharacter() ? 0 : 1;
+        }
+    };
+
+    /** The names visible in a function, or at the top level. */
+    private static class Scope {
+        private final Scope parent;
+        /** Whether this function, or one it's in, starts with <i>"use strict"</i>. */
+        private final boolean strict;
+        private final Set<String> names = new LinkedHashSet<String>();
+        /** Names used here before they were defined, and not defined since. */
+        private final Set<String> implied = new HashSet<String>();
+
+        Scope(Scope parent, boolean strict) {
+            this.parent = parent;
+            this.strict = strict || (parent != null && parent.strict);
+        }
+
+        boolean defines(String name) {
+            for (Scope s = this; s != null; s = s.parent) {
+                if (s.names.contains(name)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /** Everything to do with linting one file. */
+    private static class Run {
+        private final String systemId;
+        private final String source;
+        private final Map<Option, String> options;
+        private final int[] lineStarts;
+        private final List<Issue> issues = new ArrayList<Issue>();
+        private final Set<String> predefined = new HashSet<String>();
+        private final Set<String> globals = new LinkedHashSet<String>();
+        /** Names which are declared rather than used, such as a variable's. */
+        private final Map<Name, Boolean> declarations = new IdentityHashMap<Name, Boolean>();
+        /** Which characters are code, rather than comments, strings or regular expressions. */
+        private boolean[] code;
+        /** Which characters are comments. */
+        private boolean[] comment;
+
+        Run(String systemId, String source, Map<Option, String> options) {
+            this.systemId = systemId;
+            this.source = source;
+            this.options = new EnumMap<Option, String>(options);
+            this.lineStarts = lineStarts(source);
+        }
+
+        JSLintResult lint() {
+            CompilerEnvirons env = new CompilerEnvirons();
+            env.setRecordingComments(true);
+            env.setRecordingLocalJsDocComments(true);
+            env.setIdeMode(true);
+            env.setRecoverFromErrors(true);
+            env.setReservedKeywordAsIdentifier(true);
+            ErrorCollector errors = new ErrorCollector();
+            AstRoot root = null;
+            try {
+                root = new Parser(env, errors).parse(source, systemId, 1);
+            } catch (RhinoException e) {
+                issues.add(issue(Math.max(1, e.lineNumber()), Math.max(1, e.columnNumber()),
+                        e.details(), e.details(), null, null));
+            }
+            for (ParseProblem problem : errors.getErrors()) {
+                if (problem.getType() == ParseProblem.Type.Error) {
+                    add(problem.getFileOffset(), problem.getMessage(), null, null);
+                }
+            }
+            if (issues.isEmpty() && root != null) {
+                // Rhino recovers from errors, but its tree then isn't worth checking.
+                readDirectives(root);
+                mask(root);
+                Scope top = new Scope(null, isUseStrict(root.getFirstChild()));
+                walk(root, top, true);
+                top.names.addAll(globals);
+                globals.clear();
+                globals.addAll(top.names);
+                if (!isSet(Option.WHITE)) {
+                    checkSpacing();
+                }
+            }
+            Collections.sort(issues, SOURCE_ORDER);
+            int maxErr = isSet(Option.PASSFAIL) ? 1 : maxErr();
+            JSLintResult.ResultBuilder builder = new JSLintResult.ResultBuilder(systemId);
+            for (Issue issue : issues.subList(0, Math.min(maxErr, issues.size()))) {
+                builder.addIssue(issue);
+            }
+            for (String global : globals) {
+                builder.addGlobal(global);
+            }
+            return builder.build();
+        }
+
+        /** Apply <i>/*jslint</i> and <i>/*global</i> comments, and work out what's predefined. */
+        private void readDirectives(AstRoot root) {
+            predefined.addAll(STANDARD);
+            predefined.addAll(JSLintProvider.parsePredef(options.get(Option.PREDEF)));
+            if (root.getComments() != null) {
+                for (Comment c : root.getComments()) {
+                    String text = c.getValue();
+                    if (text.startsWith("/*jslint")) {
+                        for (String[] pair : pairs(text, "/*jslint")) {
+                            Option o = option(pair[0]);
+                            if (o != null && pair[1] != null) {
+                                options.put(o, pair[1]);
+                            }
+                        }
+                    } else if (text.startsWith("/*global")) {
+                        for (String[] pair : pairs(text, "/*global")) {
+                            predefined.add(pair[0]);
+                        }
+                    }
+                }
+            }
+            for (Map.Entry<Option, Set<String>> entry : ENVIRONMENTS.entrySet()) {
+                if (isSet(entry.getKey())) {
+                    predefined.addAll(entry.getValue());
+                }
+            }
+        }
+
+        /**
+         * Check the statements under {@code node} with the names in {@code scope}. Functions are
+         * walked separately, so that they get a scope of their own.
+         */
+        private void walk(AstNode node, final Scope scope, final boolean topLevel) {
+            node.visit(new NodeVisitor() {
+                public boolean visit(AstNode n) {
+                    if (n instanceof FunctionNode) {
+                        function((FunctionNode) n, scope, topLevel);
+                        return false;
+                    } else if (n instanceof AstRoot) {
+                        checkTopLevelStrict((AstRoot) n);
+                    } else if (n instanceof VariableInitializer) {
+                        initializer((VariableInitializer) n, scope);
+                    } else if (n instanceof CatchClause) {
+                        declare(((CatchClause) n).getVarName(), scope);
+                    } else if (n instanceof Name) {
+                        use((Name) n, scope);
+                    } else if (n instanceof InfixExpression) {
+                        operator((InfixExpression) n);
+                    }
+                    if (n instanceof ExpressionStatement || n instanceof ReturnStatement
+                            || n instanceof BreakStatement || n instanceof ContinueStatement
+                            || n instanceof ThrowStatement || (n instanceof VariableDeclaration
+                                    && !(n.getParent() instanceof Loop))) {
+                        semicolon(n);
+                    }
+                    return true;
+                }
+            });
+        }
+
+        private void function(FunctionNode fn, Scope scope, boolean topLevel) {
+            Name name = fn.getFunctionName();
+            Scope inner = new Scope(scope, isUseStrict(fn.getBody().getFirstChild()));
+            if (name != null) {
+                // A statement defines its name where it is, an expression only inside itself.
+                declare(name, fn.getFunctionType() == FunctionNode.FUNCTION_STATEMENT ? scope
+                        : inner);
+            }
+            for (AstNode param : fn.getParams()) {
+                declare(param, inner);
+            }
+            if (topLevel && !isSet(Option.SLOPPY)) {
+                checkStrict(fn);
+            }
+            walk(fn.getBody(), inner, false);
+        }
+
+        private void declare(AstNode target, Scope scope) {
+            if (target instanceof Name) {
+                String id = ((Name) target).getIdentifier();
+                declarations.put((Name) target, Boolean.TRUE);
+                // JSLint complains again when a function defines what it already used.
+                if (scope.implied.remove(id) && scope.parent != null
+                        && reportsUndefined(scope)) {
+                    add(target.getAbsolutePosition(), USED_BEFORE_DEFINED, id, null);
+                }
+                scope.names.add(id);
+            }
+        }
+
+        private void initializer(VariableInitializer vi, Scope scope) {
+            declare(vi.getTarget(), scope);
+            if (vi.getInitializer() == null || isSet(Option.WHITE)) {
+                return;
+            }
+            int at = vi.getTarget().getAbsolutePosition() + vi.getTarget().getLength();
+            int end = vi.getInitializer().getAbsolutePosition();
+            while (at < end && source.charAt(at) != '=') {
+                at++;
+            }
+            spaceAround(at, 1);
+        }
+
+        private void use(Name name, Scope scope) {
+            AstNode parent = name.getParent();
+            if (declarations.containsKey(name)
+                    || (parent instanceof PropertyGet && ((PropertyGet) parent)
+                            .getProperty() == name)
+                    || (parent instanceof ObjectProperty && ((ObjectProperty) parent)
+                            .getLeft() == name)
+                    || parent instanceof BreakStatement || parent instanceof ContinueStatement) {
+                return;
+            }
+            String id = name.getIdentifier();
+            if (scope.defines(id)) {
+                return;
+            }
+            if (predefined.contains(id)) {
+                if (!STANDARD.contains(id)) {
+                    globals.add(id);
+                }
+                return;
+            }
+            if (reportsUndefined(scope)) {
+                add(name.getAbsolutePosition(), USED_BEFORE_DEFINED, id, null);
+            }
+            // Only once per function, like JSLint.
+            scope.names.add(id);
+            scope.implied.add(id);
+        }
+
+        /** {@link Option#UNDEF} lets undefined names pass, but not in strict code. */
+        private boolean reportsUndefined(Scope scope) {
+            return !isSet(Option.UNDEF) || scope.strict;
+        }
+
+        private void operator(InfixExpression infix) {
+            if (infix instanceof PropertyGet || infix instanceof ObjectProperty
+                    || infix.getOperator() == Token.COMMA) {
+                return;
+            }
+            int at = infix.getAbsolutePosition() + infix.getOperatorPosition();
+            if (!isSet(Option.EQEQ)) {
+                if (infix.getOperator() == Token.EQ) {
+                    add(at, EXPECTED_A_B, "===", "==");
+                } else if (infix.getOperator() == Token.NE) {
+                    add(at, EXPECTED_A_B, "!==", "!=");
+                }
+            }
+            if (isSet(Option.WHITE) || at >= source.length()
+                    || Character.isJavaIdentifierStart(source.charAt(at))) {
+                // Nothing to check around in and instanceof.
+                return;
+            }
+            int end = at;
+            while (end < source.length() && "=!<>+-*/%&|^".indexOf(source.charAt(end)) >= 0) {
+                end++;
+            }
+            spaceAround(at, end - at);
+        }
+
+        /** Operators should have a space or line break either side. */
+        private void spaceAround(int at, int length) {
+            int end = at + length;
+            if (end > source.length()) {
+                return;
+            }
+            String op = source.substring(at, end);
+            if (at > 0 && !isSpace(source.charAt(at - 1))) {
+                add(at, MISSING_SPACE, tokenBefore(at), op);
+            }
+            if (end < source.length() && !isSpace(source.charAt(end))) {
+                add(end, MISSING_SPACE, op, tokenAt(end));
+            }
+        }
+
+        /**
+         * Rhino inserts semicolons where they're missing, which JSLint never does. A statement
+         * which has one includes it in its length.
+         */
+        private void semicolon(AstNode statement) {
+            int end = statement.getAbsolutePosition() + statement.getLength();
+            if (end <= 0 || end > source.length() || source.charAt(end - 1) == ';') {
+                return;
+            }
+            int next = end;
+            while (next < source.length()
+                    && (isSpace(source.charAt(next)) || comment[next])) {
+                next++;
+            }
+            add(end, EXPECTED_A_B, ";", next < source.length() ? tokenAt(next) : "(end)");
+        }
+
+        /** Functions at the top level should start with <i>"use strict"</i>. */
+        private void checkStrict(FunctionNode fn) {
+            Node first = fn.getBody().getFirstChild();
+            if (first instanceof AstNode && !isUseStrict(first)) {
+                int at = ((AstNode) first).getAbsolutePosition();
+                add(at, MISSING_USE_STRICT, tokenAt(at), null);
+            }
+        }
+
+        /** JSLint wants <i>"use strict"</i> in functions, not for the whole file. */
+        private void checkTopLevelStrict(AstRoot root) {
+            Node first = root.getFirstChild();
+            if (first instanceof AstNode && isUseStrict(first)) {
+                add(((AstNode) first).getAbsolutePosition(), FUNCTION_STRICT, null, null);
+            }
+        }
+
+        /** Look for misplaced spaces between tokens, and at the ends of lines. */
+        private void checkSpacing() {
+            int n = source.length();
+            for (int i = 0; i < n; i++) {
+                char c = source.charAt(i);
+                if (c == '\n' || i == n - 1) {
+                    int end = c == '\n' ? i : n;
+                    if (end > 0 && source.charAt(end - 1) == '\r') {
+                        end--;
+                    }
+                    int start = end;
+                    while (start > 0 && (source.charAt(start - 1) == ' '
+                            || source.charAt(start - 1) == '\t')) {
+                        start--;
+                    }
+                    if (start < end && start > lineStart(start)) {
+                        add(start, UNEXPECTED_A, "(space)", null);
+                    }
+                }
+                if (!code[i]) {
+                    continue;
+                }
+                if (c == ',' || c == ';') {
+                    int before = previousToken(i);
+                    if (before >= 0 && before < i - 1 && !(c == ';'
+                            && (source.charAt(before) == '(' || source.charAt(before) == ';'))) {
+                        add(i, UNEXPECTED_SPACE, tokenBefore(i), String.valueOf(c));
+                    }
+                    if (i + 1 < n && !isSpace(source.charAt(i + 1))
+                            && ")];".indexOf(source.charAt(i + 1)) < 0) {
+                        add(i + 1, MISSING_SPACE, String.valueOf(c), tokenAt(i + 1));
+                    }
+                } else if (c == '(') {
+                    int after = nextToken(i);
+                    if (after > i + 1 && source.charAt(after) != ')') {
+                        add(after, UNEXPECTED_SPACE, "(", tokenAt(after));
+                    }
+                } else if (c == ')') {
+                    int before = previousToken(i);
+                    if (before >= 0 && before < i - 1 && source.charAt(before) != '(') {
+                        add(i, UNEXPECTED_SPACE, tokenBefore(i), ")");
+                    }
+                } else if (c == '{') {
+                    int before = previousToken(i);
+                    String token = before < 0 ? null : tokenBefore(i);
+                    if (token != null && (token.equals(")") || BRACE_KEYWORDS.contains(token))
+                            && !source.substring(before + 1, i).equals(" ")) {
+                        add(i, EXPECTED_ONE_SPACE, token, "{");
+                    }
+                } else if (Character.isJavaIdentifierStart(c)
+                        && (i == 0 || !Character.isJavaIdentifierPart(source.charAt(i - 1)))) {
+                    int end = i;
+                    while (end < n && Character.isJavaIdentifierPart(source.charAt(end))) {
+                        end++;
+                    }
+                    String word = source.substring(i, end);
+                    int after = nextToken(end - 1);
+                    int before = previousToken(i);
+                    if ((PAREN_KEYWORDS.contains(word) || word.equals("function")) && after >= 0
+                            && source.charAt(after) == '('
+                            && (before < 0 || source.charAt(before) != '.')
+                            && !source.substring(end, after).equals(" ")) {
+                        add(after, EXPECTED_ONE_SPACE, word, "(");
+                    }
+                    i = end - 1;
+                }
+            }
+        }
+
+        /**
+         * Return the offset of the next character after {@code i} on the same line which isn't
+         * a space, or -1 if there isn't one.
+         */
+        private int nextToken(int i) {
+            for (int j = i + 1; j < source.length(); j++) {
+                char c = source.charAt(j);
+                if (c == '\n' || c == '\r') {
+                    return -1;
+                } else if (!isSpace(c)) {
+                    return j;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Return the offset of the last character before {@code i} on the same line which isn't
+         * a space, or -1 if there isn't one.
+         */
+        private int previousToken(int i) {
+            for (int j = i - 1; j >= 0; j--) {
+                char c = source.charAt(j);
+                if (c == '\n' || c == '\r') {
+                    return -1;
+                } else if (!isSpace(c)) {
+                    return j;
+                }
+            }
+            return -1;
+        }
+
+        /** The word, string or character starting at {@code i}. */
+        private String tokenAt(int i) {
+            char c = source.charAt(i);
+            if (c == '"' || c == '\'') {
+                int end = source.indexOf(c, i + 1);
+                return end < 0 ? String.valueOf(c) : source.substring(i + 1, end);
+            }
+            int end = i;
+            while (end < source.length() && Character.isJavaIdentifierPart(source.charAt(end))) {
+                end++;
+            }
+            return end > i ? source.substring(i, end) : String.valueOf(source.charAt(i));
+        }
+
+        /** The word, string or character before {@code i}, ignoring spaces. */
+        private String tokenBefore(int i) {
+            int end = i;
+            while (end > 0 && isSpace(source.charAt(end - 1))) {
+                end--;
+            }
+            char c = end > 0 ? source.charAt(end - 1) : 0;
+            if (c == '"' || c == '\'') {
+                int start = source.lastIndexOf(c, end - 2);
+                return start < 0 ? String.valueOf(c) : source.substring(start + 1, end - 1);
+            }
+            int start = end;
+            while (start > 0 && Character.isJavaIdentifierPart(source.charAt(start - 1))) {
+                start--;
+            }
+            if (start == end) {
+                start = Math.max(0, end - 1);
+            }
+            return source.substring(start, end);
+        }
+
+        /**
+         * Mark the comments, strings and regular expressions, whose contents aren't checked, in
+         * {@link #code} and {@link #comment}.
+         */
+        private void mask(AstRoot root) {
+            code = new boolean[source.length()];
+            comment = new boolean[source.length()];
+            Arrays.fill(code, true);
+            if (root.getComments() != null) {
+                for (Comment c : root.getComments()) {
+                    fill(comment, c, true);
+                    fill(code, c, false);
+                }
+            }
+            root.visit(new NodeVisitor() {
+                public boolean visit(AstNode n) {
+                    if (n instanceof StringLiteral || n instanceof RegExpLiteral) {
+                        fill(code, n, false);
+                    }
+                    return true;
+                }
+            });
+        }
+
+        private void fill(boolean[] mask, AstNode n, boolean value) {
+            int start = Math.max(0, n.getAbsolutePosition());
+            int end = Math.min(mask.length, start + n.getLength());
+            Arrays.fill(mask, start, Math.max(start, end), value);
+        }
+
+        private boolean isSet(Option o) {
+            return Boolean.parseBoolean(options.get(o));
+        }
+
+        private int maxErr() {
+            return intOption(Option.MAXERR, DEFAULT_MAXERR);
+        }
+
+        private int intOption(Option o, int defaultValue) {
+            try {
+                String value = options.get(o);
+                return value == null ? defaultValue : Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                return defaultValue;
+            }
+        }
+
+        private int lineStart(int offset) {
+            int i = Arrays.binarySearch(lineStarts, offset);
+            return lineStarts[i >= 0 ? i : -i - 2];
+        }
+
+        /** Report an issue at {@code offset}, with JSLint's {@code raw} message. */
+        private void add(int offset, String raw, String a, String b) {
+            offset = Math.max(0, Math.min(offset, source.length()));
+            int i = Arrays.binarySearch(lineStarts, offset);
+            int line = i >= 0 ? i : -i - 2;
+            issues.add(issue(line + 1, column(lineStarts[line], offset), raw, raw, a, b));
+        }
+
+        /** JSLint's column for {@code offset}, which counts a tab as {@link Option#INDENT}. */
+        private int column(int lineStart, int offset) {
+            int tab = Math.max(1, intOption(Option.INDENT, DEFAULT_INDENT));
+            int column = 1;
+            for (int i = lineStart; i < offset; i++) {
+                column += source.charAt(i) == '\t' ? tab : 1;
+            }
+            return column;
+        }
+
+        private Issue issue(int line, int character, String raw, String reason, String a,
+                String b) {
+            if (a != null) {
+                reason = reason.replace("{a}", a);
+            }
+            if (b != null) {
+                reason = reason.replace("{b}", b);
+            }
+            return new Issue.IssueBuilder(systemId, line, character, reason).raw(raw).a(a)
+                    .b(b).evidence(evidence(line)).build();
+        }
+
+        private String evidence(int line) {
+            if (line < 1 || line > lineStarts.length) {
+                return null;
+            }
+            int start = lineStarts[line - 1];
+            int end = line < lineStarts.length ? lineStarts[line] - 1 : source.length();
+            if (end > start && source.charAt(end - 1) == '\r') {
+                end--;
+            }
+            return source.substring(start, Math.max(start, end));
+        }
+    }
+
+    private final Map<Option, String> options;
+
+    FastLintEngine(Map<Option, String> options) {
+        this.options = new EnumMap<Option, String>(Option.class);
+        this.options.putAll(options);
+    }
+
+    public JSLintResult lint(String systemId, String source) {
+        return new Run(systemId, source, options).lint();
+    }
+
+    private static boolean isUseStrict(Node statement) {
+        return statement instanceof ExpressionStatement
+                && ((ExpressionStatement) statement).getExpression() instanceof StringLiteral
+                && "use strict".equals(((StringLiteral) ((ExpressionStatement) statement)
+                        .getExpression()).getValue());
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    /** The option called {@code name}, or null if there isn't one. */
+    private static Option option(String name) {
+        for (Option o : Option.values()) {
+            if (o.getLowerName().equals(name)) {
+                return o;
+            }
+        }
+        return null;
+    }
+
+    /** The {@code name: value} pairs in a directive comment; values may be null. */
+    private static List<String[]> pairs(String comment, String prefix) {
+        List<String[]> pairs = new ArrayList<String[]>();
+        String body = comment.substring(prefix.length(), Math.max(prefix.length(),
+                comment.length() - 2));
+        for (String item : body.split(",")) {
+            String[] parts = item.split(":", 2);
+            String name = parts[0].trim();
+            if (name.length() > 0) {
+                pairs.add(new String[] { name, parts.length > 1 ? parts[1].trim() : null });
+            }
+        }
+        return pairs;
+    }
+
+    private static int[] lineStarts(String source) {
+        List<Integer> starts = new ArrayList<Integer>();
+        starts.add(0);
+        for (int i = 0; i < source.length(); i++) {
+            if (source.charAt(i) == '\n') {
+                starts.add(i + 1);
+            }
+        }
+        int[] result = new int[starts.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = starts.get(i);
+        }
+        return result;
+    }
+
+    private static Set<String> names(String... names) {
+        return Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(names)));
+    }
+}
@@ -0,0 +1,237 @@
+package com.googlecode.jslint4java.eclipse.builder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.Path;
+
+import com.googlecode.jslint4java.Issue;
+import com.googlecode.jslint4java.JSFunction;
+import com.googlecode.jslint4java.JSLintResult;
+import com.googlecode.jslint4java.eclipse.JSLintLog;
+
+/**
+ * Remember which global names each file uses or declares, according to JSLint, and which
+ * predefined names each project was last fully linted with. When only {@link
+ * com.googlecode.jslint4java.Option#PREDEF} changes, this tells us which files could possibly be
+ * affected: those using a name which was added or removed. Everything else can keep its markers.
+ * <p>
+ * The index is saved in the plugin's state location when the plugin stops, and read back the
+ * first time it's used.
+ */
+public class GlobalsIndex {
+
+    /** Bump this whenever the file format changes. */
+    private static final int VERSION = 1;
+
+    /** What a project was last fully linted with. */
+    private static class Baseline {
+        private final String baseFingerprint;
+        private final Set<String> predef;
+
+        Baseline(String baseFingerprint, Set<String> predef) {
+            this.baseFingerprint = baseFingerprint;
+            this.predef = predef;
+        }
+    }
+
+    private final File file;
+
+    /** Full path of each file to the global names it uses or declares. */
+    private final Map<String, Set<String>> globals = new HashMap<String, Set<String>>();
+
+    /** Project name to what it was last fully linted with. */
+    private final Map<String, Baseline> baselines = new HashMap<String, Baseline>();
+
+    private boolean loaded;
+
+    /** Create an index which persists itself to {@code file}. */
+    public GlobalsIndex(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Return every global name that {@code result} shows was used or declared: the file's own
+     * globals, those each function consumes or leaves undefined, and any named in an issue. An
+     * extra name only costs an unnecessary lint; a missing one would leave a stale marker.
+     */
+    public static Set<String> globalsOf(JSLintResult result) {
+        Set<String> names = new TreeSet<String>(result.getGlobals());
+        for (JSFunction function : result.getFunctions()) {
+            names.addAll(function.getGlobal());
+            names.addAll(function.getUndef());
+        }
+        for (Issue issue : result.getIssues()) {
+            if (issue.getA() != null) {
+                names.add(issue.getA());
+            }
+        }
+        return Collections.unmodifiableSet(names);
+    }
+
+    /** Record that {@code file} uses or declares {@code names}. */
+    public synchronized void update(IFile file, Set<String> names) {
+        ensureLoaded();
+        globals.put(file.getFullPath().toString(), names);
+    }
+
+    /**
+     * Record that every file in {@code project} has been linted with options matching
+     * {@code baseFingerprint} and the names in {@code predef}.
+     */
+    public synchronized void linted(IProject project, String baseFingerprint,
+            Set<String> predef) {
+        ensureLoaded();
+        baselines.put(project.getName(), new Baseline(baseFingerprint, predef));
+    }
+
+    /**
+     * Return the project relative paths of the files in {@code project} whose results could be
+     * different with the names in {@code predef}, as opposed to those it was last fully linted
+     * with. Returns null if we can't tell, because the project has never been fully linted or
+     * other options have changed since (i.e. {@code baseFingerprint} is different).
+     */
+    public synchronized List<String> affectedBy(IProject project, String baseFingerprint,
+            Set<String> predef) {
+        ensureLoaded();
+        Baseline baseline = baselines.get(project.getName());
+        if (baseline == null || !baseline.baseFingerprint.equals(baseFingerprint)) {
+            return null;
+        }
+        Set<String> changed = new HashSet<String>(baseline.predef);
+        changed.addAll(predef);
+        changed.removeAll(intersection(baseline.predef, predef));
+        List<String> paths = new ArrayList<String>();
+        if (changed.isEmpty()) {
+            return paths;
+        }
+        String prefix = project.getFullPath().toString() + "/";
+        Iterator<Map.Entry<String, Set<String>>> it = globals.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Set<String>> entry = it.next();
+            if (!entry.getKey().startsWith(prefix)) {
+                continue;
+            }
+            String path = entry.getKey().substring(prefix.length());
+            if (!project.getFile(new Path(path)).exists()) {
+                it.remove();
+            } else if (!Collections.disjoint(entry.getValue(), changed)) {
+                paths.add(path);
+            }
+        }
+        return paths;
+    }
+
+    /** Forget everything, including the saved copy. */
+    public synchronized void clear() {
+        globals.clear();
+        baselines.clear();
+        loaded = true;
+        file.delete();
+    }
+
+    /** Write the index out to disk. Does nothing if it was never used. */
+    public synchronized void save() {
+        if (!loaded) {
+            return;
+        }
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(file)));
+            try {
+                out.writeInt(VERSION);
+                out.writeInt(globals.size());
+                for (Map.Entry<String, Set<String>> entry : globals.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    writeNames(out, entry.getValue());
+                }
+                out.writeInt(baselines.size());
+                for (Map.Entry<String, Baseline> entry : baselines.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeUTF(entry.getValue().baseFingerprint);
+                    writeNames(out, entry.getValue().predef);
+                }
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            JSLintLog.error("Unable to save the globals index to " + file, e);
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(file)));
+            try {
+                if (in.readInt() != VERSION) {
+                    return;
+                }
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    String path = in.readUTF();
+                    globals.put(path, readNames(in));
+                }
+                count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    String project = in.readUTF();
+                    String baseFingerprint = in.readUTF();
+                    baselines.put(project, new Baseline(baseFingerprint, readNames(in)));
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            // Not fatal; the next predef change will just re-lint whole projects.
+            JSLintLog.error("Unable to read the globals index from " + file, e);
+            globals.clear();
+            baselines.clear();
+        }
+    }
+
+    private static Set<String> intersection(Set<String> a, Set<String> b) {
+        Set<String> both = new HashSet<String>(a);
+        both.retainAll(b);
+        return both;
+    }
+
+    private static void writeNames(DataOutputStream out, Set<String> names) throws IOException {
+        out.writeInt(names.size());
+        for (String name : names) {
+            out.writeUTF(name);
+        }
+    }
+
+    private static Set<String> readNames(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        Set<String> names = new TreeSet<String>();
+        for (int i = 0; i < count; i++) {
+            names.add(in.readUTF());
+        }
+        return Collections.unmodifiableSet(names);
+    }
+}
@@ -1,59 +1,115 @@
 package com.googlecode.jslint4java.eclipse.builder;
 
-import java.io.BufferedReader;
-import java.io.Closeable;
-import java.io.IOException;
-import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.core.resources.IFile;
-import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.IResourceDelta;
 import org.eclipse.core.resources.IResourceDeltaVisitor;
-import org.eclipse.core.resources.IResourceVisitor;
-import org.eclipse.core.resources.IWorkspaceRunnable;
+import org.eclipse.core.resources.IResourceProxy;
+import org.eclipse.core.resources.IResourceProxyVisitor;
 import org.eclipse.core.resources.IncrementalProjectBuilder;
-import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.QualifiedName;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
 
-import com.googlecode.jslint4java.Issue;
 import com.googlecode.jslint4java.JSLint;
-import com.googlecode.jslint4java.JSLintResult;
 import com.googlecode.jslint4java.eclipse.JSLintLog;
 import com.googlecode.jslint4java.eclipse.JSLintPlugin;
+import com.googlecode.jslint4java.eclipse.builder.LintExecutor.FileResult;
 
 /**
  * A “Builder” which invokes {@link JSLint} on each affected JavaScript in the project.
+ * <p>
+ * A build only needs its own project (see {@link #getRule(int, Map)}), rather than the whole
+ * workspace, so several projects can be built at once, alongside other builders. Linting happens
+ * on the {@link LintExecutor}'s threads without holding any rule; only applying markers is done
+ * in a workspace operation, scoped to the files concerned.
  */
 public class JSLintBuilder extends IncrementalProjectBuilder {
 
     public static final String EXCLUDE_PATH_REGEXES_PREFERENCE = "exclude_path_regexes";
 
+    /** How many threads to lint with. Defaults to the number of available processors. */
+    public static final String LINT_THREADS_PREFERENCE = "lint_threads";
+
+    /** How many files' worth of markers to update in each workspace operation. */
+    public static final String MARKER_CHUNK_SIZE_PREFERENCE = "marker_chunk_size";
+
+    /**
+     * Comma separated, project relative folders which builds write to, and which are never
+     * linted. Most tools mark their output as derived, which we skip anyway; this is for those
+     * that don't.
+     */
+    public static final String OUTPUT_FOLDERS_PREFERENCE = "output_folders";
+
+    /**
+     * A build argument naming the only files to lint, as newline separated, project relative
+     * paths. Used to re-lint just the files whose exclusion has changed.
+     */
+    public static final String LINT_FILES_ARG = "lint_files";
+
+    /** The fingerprint of the options a project was last fully linted with. */
+    public static final QualifiedName LINTED_WITH = new QualifiedName(JSLintPlugin.PLUGIN_ID,
+            "linted_with");
+
     private class JSLintDeltaVisitor implements IResourceDeltaVisitor {
-        private final IProgressMonitor monitor;
+        /** The flags which indicate that a file's content may be different. */
+        private static final int CONTENT_FLAGS = IResourceDelta.CONTENT | IResourceDelta.ENCODING
+                | IResourceDelta.REPLACED;
 
-        public JSLintDeltaVisitor(IProgressMonitor monitor) {
-            this.monitor = monitor;
+        private final List<IFile> files;
+        private final Set<IPath> outputFolders;
+
+        public JSLintDeltaVisitor(List<IFile> files, Set<IPath> outputFolders) {
+            this.files = files;
+            this.outputFolders = outputFolders;
         }
 
         public boolean visit(IResourceDelta delta) throws CoreException {
             IResource resource = delta.getResource();
+            if (delta.getKind() != IResourceDelta.REMOVED) {
+                if (resource.getType() == IResource.FOLDER
+                        && isPrunedFolder(resource.getFullPath(), resource.isDerived(),
+                                outputFolders)) {
+                    pruneFolder(resource);
+                    return false;
+                }
+                if (resource.getType() == IResource.FILE && resource.isDerived()) {
+                    return false;
+                }
+            }
             switch (delta.getKind()) {
             case IResourceDelta.ADDED:
                 // handle added resource
-                logProgress(monitor, resource);
-                checkJavaScript(resource);
+                collectJavaScript(resource, files);
                 break;
             case IResourceDelta.REMOVED:
-                // handle removed resource
-                break;
+                // handle removed resource.  Nothing underneath can need linting.
+                if (resource.getType() != IResource.FILE) {
+                    deltaCounters.subtreePruned();
+                }
+                return false;
             case IResourceDelta.CHANGED:
-                // handle changed resource
-                logProgress(monitor, resource);
-                checkJavaScript(resource);
+                // handle changed resource.  Our own markers (amongst other things) turn up
+                // here, so only lint if the content might actually be different.
+                if (resource.getType() == IResource.FILE) {
+                    if ((delta.getFlags() & CONTENT_FLAGS) != 0) {
+                        deltaCounters.contentChanged();
+                        collectJavaScript(resource, files);
+                    } else if (isJavaScript(resource.getName())) {
+                        deltaCounters.deltaSkipped();
+                    }
+                }
                 break;
             }
             // return true to continue visiting children.
@@ -61,16 +117,33 @@ public class JSLintBuilder extends IncrementalProjectBuilder {
         }
     }
 
-    private class JSLintResourceVisitor implements IResourceVisitor {
-        private final IProgressMonitor monitor;
+    /**
+     * Visit resource proxies rather than resources, so that we only create a handle for files
+     * we're going to lint. Team private members (e.g. <i>.svn</i>) aren't visited at all.
+     */
+    private class JSLintProxyVisitor implements IResourceProxyVisitor {
+        private final List<IFile> files;
+        private final Set<IPath> outputFolders;
 
-        public JSLintResourceVisitor(IProgressMonitor monitor) {
-            this.monitor = monitor;
+        public JSLintProxyVisitor(List<IFile> files, Set<IPath> outputFolders) {
+            this.files = files;
+            this.outputFolders = outputFolders;
         }
 
-        public boolean visit(IResource resource) {
-            logProgress(monitor, resource);
-            checkJavaScript(resource);
+        public boolean visit(IResourceProxy proxy) {
+            switch (proxy.getType()) {
+            case IResource.FILE:
+                if (!proxy.isDerived() && isJavaScript(proxy.getName())) {
+                    collectJavaScript(proxy.requestResource(), files);
+                }
+                return false;
+            case IResource.FOLDER:
+                if (isPrunedFolder(proxy.requestFullPath(), proxy.isDerived(), outputFolders)) {
+                    pruneFolder(proxy.requestResource());
+                    return false;
+                }
+                break;
+            }
             // return true to continue visiting children.
             return true;
         }
@@ -83,106 +156,153 @@ public class JSLintBuilder extends IncrementalProjectBuilder {
     public static final String MARKER_TYPE = JSLintPlugin.PLUGIN_ID
             + ".javaScriptLintProblem";
 
-    private final JSLintProvider lintProvider = new JSLintProvider();
-    private final Excluder excluder = new Excluder();
+    private final LintService lintService = JSLintPlugin.getDefault().getLintService();
+    private final LintResultCache resultCache = JSLintPlugin.getDefault().getResultCache();
+    private final DeltaCounters deltaCounters = JSLintPlugin.getDefault().getDeltaCounters();
+    private final ReadCounters readCounters = JSLintPlugin.getDefault().getReadCounters();
+    private final LintPreFilter preFilter = JSLintPlugin.getDefault().getPreFilter();
+    private final LintQuarantine quarantine = JSLintPlugin.getDefault().getQuarantine();
 
-    public JSLintBuilder() {
-        lintProvider.init();
-        excluder.init();
-    }
+    private final GlobalsIndex globalsIndex = JSLintPlugin.getDefault().getGlobalsIndex();
+    private final MarkerSnapshot snapshot = JSLintPlugin.getDefault().getMarkerSnapshot();
+    private final LintMetrics metrics = JSLintPlugin.getDefault().getMetrics();
+    private final Excluder excluder = lintService.getExcluder();
+    private final MarkerReconciler markerReconciler = new MarkerReconciler(MARKER_TYPE);
 
-    private void addMarker(IFile file, Issue issue) {
+    /** What the current build has done so far. */
+    private BuildStats stats;
+
+    @Override
+    protected IProject[] build(final int kind, @SuppressWarnings("rawtypes") Map args,
+            IProgressMonitor monitor) throws CoreException {
+        long start = System.nanoTime();
+        stats = metrics.startBuild(getProject().getName());
         try {
-            IMarker m = file.createMarker(MARKER_TYPE);
-            if (m.exists()) {
-                m.setAttribute(IMarker.MESSAGE, issue.getReason());
-                m.setAttribute(IMarker.SEVERITY, IMarker.SEVERITY_WARNING);
-                m.setAttribute(IMarker.LINE_NUMBER, issue.getLine());
-                m.setAttribute(IMarker.SOURCE_ID, "jslint4java");
+            String only = args == null ? null : (String) args.get(LINT_FILES_ARG);
+            if (only != null) {
+                lintOnly(only.split("\n"), monitor);
+                // This wasn't a real build, so the next one must still see earlier changes.
+                rememberLastBuiltState();
+            } else {
+                buildProject(kind, monitor);
             }
-            // JSLintLog.logInfo("Added marker for " + issue);
-        } catch (CoreException e) {
-            JSLintLog.error(e);
+        } finally {
+            metrics.finishBuild(stats, System.nanoTime() - start);
         }
+        return null;
     }
 
+    /**
+     * We only read this project's files and change its markers, so don't lock anything else.
+     */
     @Override
-    protected IProject[] build(final int kind, @SuppressWarnings("rawtypes") Map args,
-            IProgressMonitor monitor) throws CoreException {
-        ResourcesPlugin.getWorkspace().run(new IWorkspaceRunnable() {
-            public void run(IProgressMonitor monitor) throws CoreException {
-                if (kind == FULL_BUILD) {
-                    fullBuild(monitor);
-                } else {
-                    IResourceDelta delta = getDelta(getProject());
-                    if (delta == null) {
-                        fullBuild(monitor);
-                    } else {
-                        incrementalBuild(delta, monitor);
-                    }
-                }
+    public ISchedulingRule getRule(int kind, Map<String, String> args) {
+        return getProject();
+    }
+
+    private void buildProject(int kind, IProgressMonitor monitor) throws CoreException {
+        if (kind == FULL_BUILD) {
+            fullBuild(monitor);
+        } else {
+            IResourceDelta delta = getDelta(getProject());
+            if (delta == null) {
+                fullBuild(monitor);
+            } else {
+                incrementalBuild(delta, monitor);
             }
-        }, monitor);
-        return null;
+        }
     }
 
-    private void checkJavaScript(IResource resource) {
+    /**
+     * Add {@code resource} to {@code files} if it is a JavaScript file which should be linted.
+     * Excluded files have any existing problems removed.
+     */
+    private void collectJavaScript(IResource resource, List<IFile> files) {
         if (!(resource instanceof IFile)) {
             return;
         }
 
         IFile file = (IFile) resource;
-        if (!isJavaScript(file)) {
+        if (!isJavaScript(file.getName())) {
             return;
         }
 
-        // Clear out any existing problems.
-        deleteMarkers(file);
-
+        stats.visited();
         if (excluded(file)) {
+            stats.excluded();
+            // Clear out any existing problems.
+            deleteMarkers(file);
             return;
         }
 
-        BufferedReader reader = null;
+        files.add(file);
+    }
+
+    /**
+     * Should the folder at {@code path} be skipped entirely? That's the case for derived
+     * folders, output folders and folders whose entire contents are excluded.
+     */
+    private boolean isPrunedFolder(IPath path, boolean derived, Set<IPath> outputFolders) {
+        return derived || outputFolders.contains(path) || excluder.isExcludedFolder(path);
+    }
+
+    /**
+     * Remove any existing problems inside {@code folder}, which won't be visited. Finding
+     * markers only walks the workspace tree in memory, so this is much cheaper than visiting.
+     */
+    private void pruneFolder(IResource folder) {
+        deltaCounters.subtreePruned();
         try {
-            JSLint lint = lintProvider.getJsLint();
-            // TODO: this should react to changes in the prefs pane instead.
-            reader = new BufferedReader(new InputStreamReader(file
-                    .getContents(), file.getCharset()));
-            JSLintResult result = lint.lint(file.getFullPath().toString(),
-                    reader);
-            for (Issue issue : result.getIssues()) {
-                addMarker(file, issue);
-            }
-        } catch (IOException e) {
+            folder.deleteMarkers(MARKER_TYPE, false, IResource.DEPTH_INFINITE);
+        } catch (CoreException e) {
             JSLintLog.error(e);
+        }
+    }
+
+    /**
+     * Update the markers on each file to match the newly found issues. This is done as a single
+     * workspace operation, so listeners see one change per chunk of files.
+     */
+    private void applyResults(List<FileResult> results) {
+        long start = System.nanoTime();
+        try {
+            markerReconciler.reconcile(getProject().getWorkspace(), results, null);
         } catch (CoreException e) {
             JSLintLog.error(e);
         } finally {
-            close(reader);
+            stats.markersUpdated(System.nanoTime() - start);
         }
     }
 
     /**
-     * Is {@code file} explicitly excluded? Check against a list of regexes in
+     * Is {@code file} explicitly excluded? Check against the regexes and globs in
      * the <i>exclude_path_regexes</i> preference.
      */
     private boolean excluded(IFile file) {
         return excluder.isExcluded(file);
     }
 
-    private boolean isJavaScript(IFile file) {
-        return file.getName().endsWith(".js");
+    private boolean isJavaScript(String name) {
+        return name.endsWith(".js");
     }
 
-    private void close(Closeable close) {
-        if (close == null) {
-            return;
-        }
-        try {
-            close.close();
-        } catch (IOException e) {
+    /** Return the full paths of this project's output folders. */
+    private Set<IPath> outputFolders() {
+        return outputFolders(getProject());
+    }
+
+    /** Return the full paths of {@code project}'s output folders. */
+    static Set<IPath> outputFolders(IProject project) {
+        Set<IPath> folders = new HashSet<IPath>();
+        String pref = Platform.getPreferencesService().getString(JSLintPlugin.PLUGIN_ID,
+                OUTPUT_FOLDERS_PREFERENCE, "", null);
+        for (String folder : pref.split(",")) {
+            folder = folder.trim();
+            if (folder.length() > 0) {
+                folders.add(project.getFullPath().append(folder));
+            }
         }
+        return folders;
     }
 
     private void deleteMarkers(IFile file) {
@@ -194,9 +314,17 @@ public class JSLintBuilder extends IncrementalProjectBuilder {
     }
 
     private void fullBuild(final IProgressMonitor monitor) throws CoreException {
+        JSLintProvider lintProvider = lintService.getLintProvider();
+        String fingerprint = lintProvider.getOptionFingerprint(getProject());
+        String baseFingerprint = lintProvider.getBaseFingerprint(getProject());
+        Set<String> predef = lintProvider.getPredef(getProject());
         try {
-            startProgress(monitor);
-            getProject().accept(new JSLintResourceVisitor(monitor));
+            List<IFile> files = new ArrayList<IFile>();
+            getProject().accept(new JSLintProxyVisitor(files, outputFolders()), IResource.NONE);
+            lintFiles(files, monitor);
+            snapshot.retainOnly(getProject(), files);
+            globalsIndex.linted(getProject(), baseFingerprint, predef);
+            getProject().setPersistentProperty(LINTED_WITH, fingerprint);
         } catch (CoreException e) {
             JSLintLog.error(e);
         } finally {
@@ -207,18 +335,59 @@ public class JSLintBuilder extends IncrementalProjectBuilder {
     private void incrementalBuild(IResourceDelta delta, IProgressMonitor monitor)
             throws CoreException {
         try {
-            startProgress(monitor);
-            delta.accept(new JSLintDeltaVisitor(monitor));
+            List<IFile> files = new ArrayList<IFile>();
+            delta.accept(new JSLintDeltaVisitor(files, outputFolders()));
+            lintFiles(files, monitor);
+        } finally {
+            monitor.done();
+        }
+    }
+
+    /** Lint just the files at the project relative {@code paths}, ignoring any which are gone. */
+    private void lintOnly(String[] paths, IProgressMonitor monitor) {
+        try {
+            List<IFile> files = new ArrayList<IFile>();
+            for (String path : paths) {
+                if (path.length() > 0 && getProject().getFile(path).exists()) {
+                    collectJavaScript(getProject().getFile(path), files);
+                }
+            }
+            lintFiles(files, monitor);
         } finally {
             monitor.done();
         }
     }
 
-    private void startProgress(IProgressMonitor monitor) {
-        monitor.beginTask("jslint4java", IProgressMonitor.UNKNOWN);
+    /**
+     * Lint {@code files} in parallel, updating markers as results arrive. If the build is
+     * cancelled, we forget our last built state so that the next build starts afresh.
+     */
+    private void lintFiles(List<IFile> files, IProgressMonitor monitor) {
+        monitor.beginTask("jslint4java", files.size());
+        LintExecutor executor = new LintExecutor(lintService, resultCache, readCounters,
+                preFilter, quarantine, globalsIndex, snapshot, stats, lintThreads(),
+                markerChunkSize());
+        try {
+            executor.lint(files, new LintExecutor.ResultHandler() {
+                public void handle(List<FileResult> batch) {
+                    applyResults(batch);
+                }
+            }, monitor);
+        } catch (OperationCanceledException e) {
+            forgetLastBuiltState();
+            throw e;
+        }
+    }
+
+    /** How many threads should we lint with? */
+    private int lintThreads() {
+        return Platform.getPreferencesService().getInt(JSLintPlugin.PLUGIN_ID,
+                LINT_THREADS_PREFERENCE, 1, null);
     }
 
-    private void logProgress(IProgressMonitor monitor, IResource resource) {
-        monitor.subTask("Linting " + resource.getName());
+    /** How many files should we update markers for at once? */
+    private int markerChunkSize() {
+        return Platform.getPreferencesService().getInt(JSLintPlugin.PLUGIN_ID,
+                MARKER_CHUNK_SIZE_PREFERENCE, 1, null);
     }
 }
@@ -0,0 +1,57 @@
+package com.googlecode.jslint4java.eclipse.builder;
+
+import java.util.Map;
+
+import org.eclipse.core.runtime.IConfigurationElement;
+import org.eclipse.core.runtime.IExecutableExtension;
+
+import com.googlecode.jslint4java.JSLint;
+import com.googlecode.jslint4java.JSLintResult;
+import com.googlecode.jslint4java.Option;
+
+/**
+ * The default engine: JSLint itself, running in Rhino. Every check it has is available, at the
+ * cost of running <i>jslint.js</i>. When contributed with the data <i>interpreted</i> (as in
+ * <code>class="...JSLintEngineFactory:interpreted"</code>), the script is interpreted rather
+ * than compiled; see {@link JSLintScript.Mode}.
+ */
+public class JSLintEngineFactory implements LintEngineFactory, IExecutableExtension {
+
+    /** An instance of JSLint, configured once. */
+    static class JSLintEngine implements LintEngine {
+        private final JSLint lint;
+
+        JSLintEngine(JSLint lint) {
+            this.lint = lint;
+        }
+
+        public JSLintResult lint(String systemId, String source) {
+            return lint.lint(systemId, source);
+        }
+    }
+
+    private JSLintScript script;
+
+    /** Create a factory which compiles <i>jslint.js</i> afresh, without saving it. */
+    public JSLintEngineFactory() {
+        this(new JSLintScript(null));
+    }
+
+    /** Create a factory which makes its instances from {@code script}. */
+    public JSLintEngineFactory(JSLintScript script) {
+        this.script = script;
+    }
+
+    public void setInitializationData(IConfigurationElement config, String propertyName,
+            Object data) {
+        if ("interpreted".equals(data)) {
+            script = new JSLintScript(null, JSLintScript.Mode.INTERPRETED);
+        }
+    }
+
+    public LintEngine newEngine(Map<Option, String> options) {
+        JSLint lint = script.newJSLint();
+        JSLintProvider.configure(lint, options);
+        return new JSLintEngine(lint);
+    }
+}
@@ -1,65 +1,553 @@
 package com.googlecode.jslint4java.eclipse.builder;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.ProjectScope;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.core.runtime.preferences.IEclipsePreferences;
 import org.eclipse.core.runtime.preferences.IEclipsePreferences.IPreferenceChangeListener;
 import org.eclipse.core.runtime.preferences.IEclipsePreferences.PreferenceChangeEvent;
 import org.eclipse.core.runtime.preferences.IPreferencesService;
+import org.eclipse.core.runtime.preferences.IScopeContext;
 import org.eclipse.core.runtime.preferences.InstanceScope;
+import org.osgi.service.prefs.BackingStoreException;
 
 import com.googlecode.jslint4java.JSLint;
-import com.googlecode.jslint4java.JSLintBuilder;
 import com.googlecode.jslint4java.Option;
 import com.googlecode.jslint4java.eclipse.JSLintLog;
 import com.googlecode.jslint4java.eclipse.JSLintPlugin;
 
 /**
- * Provide a fully configured instance of {@link JSLint} on demand.
+ * Provide fully configured {@link LintEngine}s on demand: by default instances of {@link JSLint},
+ * or of whichever engine the <i>lint_engine</i> preference picks out of {@link LintEngines}.
+ * <p>
+ * Options, including the engine, can be set for the workspace, and overridden for each project
+ * (see {@link ProjectScope}). Each distinct set of options is identified by its fingerprint, and
+ * projects whose options have the same fingerprint share instances.
+ * <p>
+ * Creating an instance of JSLint means running <i>jslint.js</i>, which is slow, even though the
+ * {@link JSLintScript} only compiles it once. So we keep a pool of idle, configured instances for
+ * each of the most recently used fingerprints, sized by the <i>lint_threads</i> preference.
+ * Callers should {@link #checkOut(IProject)} an instance, and {@link #checkIn(LintEngine)} it
+ * when they're done. When the options change, the pool for the new fingerprint is filled in the
+ * background, so that the next build doesn't have to wait, and any {@link OptionsListener}s are
+ * told.
  */
 public class JSLintProvider {
 
-    private final JSLintBuilder builder = new JSLintBuilder();
+    /** Should the pool be filled as soon as the plugin starts? */
+    public static final String PREWARM_PREFERENCE = "prewarm_jslint";
+
+    /** Told when the options that apply to a project change. */
+    public interface OptionsListener {
+        /**
+         * The options for {@code project} have changed, or for the workspace if
+         * {@code project} is null.
+         */
+        void optionsChanged(IProject project);
+    }
+
+    /** How many different sets of options to keep idle instances for. */
+    private static final int MAX_OPTION_SETS = 4;
+
+    /** Fill the pools for the options of every project with the nature. */
+    private class WarmUpJob extends Job {
+        public WarmUpJob() {
+            super("Preparing JSLint");
+            setSystem(true);
+            setPriority(Job.LONG);
+        }
+
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+            for (Resolved r : optionsInUse()) {
+                while (!monitor.isCanceled()) {
+                    synchronized (JSLintProvider.this) {
+                        LinkedList<LintEngine> pool = idle.get(r.fingerprint);
+                        if (pool != null && pool.size() >= poolSize()) {
+                            break;
+                        }
+                    }
+                    LintEngine lint = newConfigured(r);
+                    synchronized (JSLintProvider.this) {
+                        pool(r.fingerprint).add(lint);
+                    }
+                }
+            }
+            return Status.OK_STATUS;
+        }
+    }
+
+    /** What we need to know about a set of options, worked out once per project. */
+    private static class Resolved {
+        private final String engine;
+        private final Map<Option, String> options;
+        private final String fingerprint;
+        private final String baseFingerprint;
+        private final Set<String> predef;
+
+        /**
+         * @param engine the id of the engine to lint with.
+         * @param engineVersion the version of the engine, as it affects the results.
+         * @param options the options to lint with.
+         */
+        Resolved(String engine, String engineVersion, Map<Option, String> options) {
+            this.engine = engine;
+            this.options = Collections.unmodifiableMap(options);
+            String engineKey = engine + "@" + engineVersion;
+            fingerprint = fingerprint(engineKey, options);
+            Map<Option, String> base = new EnumMap<Option, String>(options);
+            base.remove(Option.PREDEF);
+            baseFingerprint = fingerprint(engineKey, base);
+            predef = parsePredef(options.get(Option.PREDEF));
+        }
+    }
+
+    /** Watches a project's own options. */
+    private class ProjectListener implements IPreferenceChangeListener {
+        private final IProject project;
+        private final IEclipsePreferences node;
+
+        ProjectListener(IProject project) {
+            this.project = project;
+            this.node = new ProjectScope(project).getNode(JSLintPlugin.PLUGIN_ID);
+        }
+
+        public void preferenceChange(PreferenceChangeEvent ev) {
+            if (isOption(ev.getKey())) {
+                JSLintLog.info("pref %s changed for %s", ev.getKey(), project.getName());
+                optionsChanged(project);
+            }
+        }
+
+        /** Is the node still there? It goes when the project is deleted. */
+        boolean isAlive() {
+            try {
+                return node.nodeExists("");
+            } catch (BackingStoreException e) {
+                return false;
+            }
+        }
+
+        void dispose() {
+            try {
+                node.removePreferenceChangeListener(this);
+            } catch (IllegalStateException e) {
+                // The node went away with the project.
+            }
+        }
+    }
+
+    private final LintEngines engines;
+
+    private final LintMetrics metrics;
+
+    private final IPreferenceChangeListener listener = new IPreferenceChangeListener() {
+        public void preferenceChange(PreferenceChangeEvent ev) {
+            if (isOption(ev.getKey())) {
+                JSLintLog.info("pref %s changed; replacing lint engines", ev.getKey());
+                optionsChanged(null);
+            }
+        }
+    };
+
+    /** Forgets projects as they're closed or deleted. */
+    private final IResourceChangeListener projectRemover = new IResourceChangeListener() {
+        public void resourceChanged(IResourceChangeEvent event) {
+            if (event.getResource() instanceof IProject) {
+                forget((IProject) event.getResource());
+            }
+        }
+    };
+
+    private final List<OptionsListener> optionsListeners =
+            new CopyOnWriteArrayList<OptionsListener>();
+
+    /** Idle instances for each fingerprint, least recently used first. */
+    private final Map<String, LinkedList<LintEngine>> idle = new LinkedHashMap<String,
+            LinkedList<LintEngine>>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
 
-    private JSLint jsLint;
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, LinkedList<LintEngine>> eldest) {
+            return size() > MAX_OPTION_SETS;
+        }
+    };
+
+    /** The fingerprint of the options each checked out instance was configured with. */
+    private final Map<LintEngine, String> checkedOut =
+            new IdentityHashMap<LintEngine, String>();
+
+    /** Each project's current options, where known. */
+    private final Map<IProject, Resolved> resolved = new HashMap<IProject, Resolved>();
+
+    /** The projects whose own options we're watching. */
+    private final Map<IProject, ProjectListener> watched = new HashMap<IProject, ProjectListener>();
+
+    /** The workspace options, or null if not yet known. */
+    private Resolved workspaceResolved;
+
+    /** Incremented each time any options change. */
+    private int changes;
+
+    private final Job warmUpJob = new WarmUpJob();
 
     /**
-     * Set up a listener for preference changes. This will ensure that the instance of
-     * {@link JSLint} that we have is kept in sync with the users choices. We do this by ensuring
-     * that a new JSLint will be created and configured on the next request.
+     * @param engines what to create instances with.
+     * @param metrics where to record how long it takes to create instances.
+     */
+    public JSLintProvider(LintEngines engines, LintMetrics metrics) {
+        this.engines = engines;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Set up a listener for preference changes. This will ensure that the engines that we hand
+     * out are kept in sync with the users choices.
      */
     public void init() {
         IEclipsePreferences x = InstanceScope.INSTANCE.getNode(JSLintPlugin.PLUGIN_ID);
-        x.addPreferenceChangeListener(new IPreferenceChangeListener() {
-            public void preferenceChange(PreferenceChangeEvent ev) {
-                jsLint = null;
-                JSLintLog.info("pref %s changed; nulling jsLint", ev.getKey());
+        x.addPreferenceChangeListener(listener);
+        ResourcesPlugin.getWorkspace().addResourceChangeListener(projectRemover,
+                IResourceChangeEvent.PRE_CLOSE | IResourceChangeEvent.PRE_DELETE);
+    }
+
+    /** Stop listening for preference changes and drop any pooled instances. */
+    public void dispose() {
+        IEclipsePreferences x = InstanceScope.INSTANCE.getNode(JSLintPlugin.PLUGIN_ID);
+        x.removePreferenceChangeListener(listener);
+        ResourcesPlugin.getWorkspace().removeResourceChangeListener(projectRemover);
+        warmUpJob.cancel();
+        synchronized (this) {
+            for (ProjectListener projectListener : watched.values()) {
+                projectListener.dispose();
             }
-        });
+            watched.clear();
+            resolved.clear();
+            idle.clear();
+        }
+    }
+
+    /** Tell {@code l} whenever the options change. */
+    public void addOptionsListener(OptionsListener l) {
+        optionsListeners.add(l);
+    }
+
+    public void removeOptionsListener(OptionsListener l) {
+        optionsListeners.remove(l);
+    }
+
+    /** Fill the pools in the background. */
+    public void warmUp() {
+        warmUpJob.schedule();
     }
 
     /**
-     * Return a fully configured instance of JSLint. This should not be cached; each use should call
-     * this method.
+     * Return an engine configured with {@code project}'s options, for the exclusive use of the
+     * caller. It must be returned using {@link #checkIn(LintEngine)}. If there's no idle
+     * instance, a new one will be created.
      */
-    public JSLint getJsLint() {
-        if (jsLint == null) {
-            // TODO: Allow for non-default versions of fulljslint.js.
-            jsLint = builder.fromDefault();
-            configure();
+    public LintEngine checkOut(IProject project) {
+        String fingerprint = getOptionFingerprint(project);
+        LintEngine lint;
+        synchronized (this) {
+            LinkedList<LintEngine> pool = idle.get(fingerprint);
+            lint = pool == null ? null : pool.poll();
+        }
+        if (lint == null) {
+            Resolved r = read(project);
+            // Use what we actually read, in case the options changed in the meantime.
+            fingerprint = r.fingerprint;
+            lint = newConfigured(r);
         }
-        return jsLint;
+        synchronized (this) {
+            checkedOut.put(lint, fingerprint);
+        }
+        return lint;
     }
 
-    /** Set up the current instance of JSLint using the current preferences. */
-    public void configure() {
-        JSLint lint = getJsLint();
-        lint.resetOptions();
+    /** Return an instance obtained from {@link #checkOut(IProject)} to the pool. */
+    public synchronized void checkIn(LintEngine lint) {
+        String fingerprint = checkedOut.remove(lint);
+        if (fingerprint != null) {
+            LinkedList<LintEngine> pool = pool(fingerprint);
+            if (pool.size() < poolSize()) {
+                pool.add(lint);
+            }
+        }
+    }
+
+    /**
+     * Forget about {@code lint}, which was obtained from {@link #checkOut(IProject)}, instead of
+     * returning it to the pool. Use this if it may have been left in a bad state.
+     */
+    public synchronized void discard(LintEngine lint) {
+        checkedOut.remove(lint);
+    }
+
+    /**
+     * Return the fingerprint of the options that {@code lint}, which must currently be checked
+     * out, was configured with. Two instances with the same fingerprint will produce the same
+     * results for the same input.
+     */
+    public synchronized String getOptionFingerprint(LintEngine lint) {
+        return checkedOut.get(lint);
+    }
+
+    /** Return the fingerprint of the options for {@code project}, or the workspace if null. */
+    public String getOptionFingerprint(IProject project) {
+        return resolve(project).fingerprint;
+    }
+
+    /**
+     * Return the fingerprint of the options for {@code project} (or the workspace if null),
+     * leaving out {@link Option#PREDEF}. A change of predefined names only affects files which
+     * use those names, so results can be shared across such changes (see
+     * {@link LintResultCache}).
+     */
+    public String getBaseFingerprint(IProject project) {
+        return resolve(project).baseFingerprint;
+    }
+
+    /** Return the names predefined for {@code project}, or the workspace if null. */
+    public Set<String> getPredef(IProject project) {
+        return resolve(project).predef;
+    }
+
+    /** Return the options for {@code project}, or the workspace if null. */
+    public Map<Option, String> getOptions(IProject project) {
+        return resolve(project).options;
+    }
+
+    /** Return the id of the engine for {@code project}, or the workspace if null. */
+    public String getEngine(IProject project) {
+        return resolve(project).engine;
+    }
+
+    /** Return the engines which can be picked from. */
+    public LintEngines getEngines() {
+        return engines;
+    }
+
+    /** Return what we know of the options for {@code project}, reading them if need be. */
+    private Resolved resolve(IProject project) {
+        int before;
+        synchronized (this) {
+            ProjectListener current = project == null ? null : watched.get(project);
+            if (current != null && !current.isAlive()) {
+                // A new project of the same name, which may have options of its own.
+                forget(project);
+            }
+            before = changes;
+            Resolved r = project == null ? workspaceResolved : resolved.get(project);
+            if (r != null) {
+                return r;
+            }
+            if (project != null && !watched.containsKey(project)) {
+                ProjectListener projectListener = new ProjectListener(project);
+                projectListener.node.addPreferenceChangeListener(projectListener);
+                watched.put(project, projectListener);
+            }
+        }
+        Resolved r = read(project);
+        synchronized (this) {
+            if (changes != before) {
+                // Too late to remember; it may already be out of date.
+                return r;
+            }
+            if (project == null) {
+                workspaceResolved = r;
+            } else {
+                resolved.put(project, r);
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Return a new engine, configured with the workspace options. This bypasses the pool
+     * entirely.
+     */
+    public LintEngine newEngine() {
+        return newConfigured(read(null));
+    }
+
+    private LintEngine newConfigured(Resolved r) {
+        // TODO: Allow for non-default versions of fulljslint.js.
+        long start = System.nanoTime();
+        LintEngine lint = engines.getFactory(r.engine).newEngine(r.options);
+        metrics.instanceCreated(System.nanoTime() - start);
+        return lint;
+    }
+
+    /** The pool for {@code fingerprint}, which is created if need be. */
+    private LinkedList<LintEngine> pool(String fingerprint) {
+        LinkedList<LintEngine> pool = idle.get(fingerprint);
+        if (pool == null) {
+            pool = new LinkedList<LintEngine>();
+            idle.put(fingerprint, pool);
+        }
+        return pool;
+    }
+
+    /** Drop every idle instance, so that new ones are made as they're needed. */
+    public synchronized void discardIdle() {
+        idle.clear();
+    }
+
+    /**
+     * Forget the fingerprint of {@code project}'s options, or every project's if it's null, and
+     * prepare instances for the new options. Pools for the old options are left to age out, as
+     * other projects may still be using them.
+     */
+    private void optionsChanged(IProject project) {
+        synchronized (this) {
+            changes++;
+            if (project == null) {
+                workspaceResolved = null;
+                resolved.clear();
+            } else {
+                resolved.remove(project);
+            }
+        }
+        warmUp();
+        for (OptionsListener l : optionsListeners) {
+            l.optionsChanged(project);
+        }
+    }
+
+    /**
+     * Stop watching {@code project}'s options and forget them, as it's going away. If it comes
+     * back, its options are read afresh.
+     */
+    private synchronized void forget(IProject project) {
+        ProjectListener projectListener = watched.remove(project);
+        if (projectListener != null) {
+            projectListener.dispose();
+        }
+        resolved.remove(project);
+        // Don't let a resolve already under way remember what it read.
+        changes++;
+    }
+
+    /** The distinct sets of options used by open projects with the nature. */
+    private List<Resolved> optionsInUse() {
+        Set<String> seen = new LinkedHashSet<String>();
+        List<Resolved> result = new ArrayList<Resolved>();
+        for (IProject project : ResourcesPlugin.getWorkspace().getRoot().getProjects()) {
+            try {
+                if (!project.isOpen() || !project.hasNature(JSLintNature.NATURE_ID)) {
+                    continue;
+                }
+            } catch (CoreException e) {
+                continue;
+            }
+            Resolved r = read(project);
+            if (seen.add(r.fingerprint) && result.size() < MAX_OPTION_SETS) {
+                result.add(r);
+            }
+        }
+        if (result.isEmpty()) {
+            result.add(read(null));
+        }
+        return result;
+    }
+
+    /** Is {@code key} the name of a JSLint option, or the engine? */
+    private boolean isOption(String key) {
+        if (key.equals(LintEngines.LINT_ENGINE_PREFERENCE)) {
+            return true;
+        }
+        for (Option o : Option.values()) {
+            if (o.getLowerName().equals(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** How many idle instances should we keep for each set of options? */
+    private int poolSize() {
+        return Platform.getPreferencesService().getInt(JSLintPlugin.PLUGIN_ID,
+                JSLintBuilder.LINT_THREADS_PREFERENCE, 1, null);
+    }
+
+    /**
+     * Read the engine, and the value of each option, which have been set for {@code project}
+     * (or the workspace, if it's null).
+     */
+    private Resolved read(IProject project) {
+        IScopeContext[] contexts = project == null ? null
+                : new IScopeContext[] { new ProjectScope(project) };
+        Map<Option, String> options = new EnumMap<Option, String>(Option.class);
         IPreferencesService prefs = Platform.getPreferencesService();
         for (Option o : Option.values()) {
-            String value = prefs.getString(JSLintPlugin.PLUGIN_ID, o.getLowerName(), null, null);
+            String value = prefs.getString(JSLintPlugin.PLUGIN_ID, o.getLowerName(), null,
+                    contexts);
             if (value != null) {
-                lint.addOption(o, value);
+                options.put(o, value);
+            }
+        }
+        String engine = engines.resolve(prefs.getString(JSLintPlugin.PLUGIN_ID,
+                LintEngines.LINT_ENGINE_PREFERENCE, null, contexts));
+        return new Resolved(engine, engines.getVersion(engine), options);
+    }
+
+    /** Set up {@code lint} using {@code options}. */
+    static void configure(JSLint lint, Map<Option, String> options) {
+        lint.resetOptions();
+        for (Map.Entry<Option, String> entry : options.entrySet()) {
+            lint.addOption(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Summarise a set of options for {@code engine}. We include our own version, as that
+     * determines which version of jslint4java they apply to.
+     */
+    private static String fingerprint(String engine, Map<Option, String> options) {
+        StringBuilder sb = new StringBuilder(JSLintPlugin.getDefault().getBundle().getVersion()
+                .toString());
+        sb.append(';').append(engine);
+        for (Map.Entry<Option, String> entry : options.entrySet()) {
+            sb.append(';').append(entry.getKey().getLowerName()).append('=').append(
+                    entry.getValue());
+        }
+        return Digests.sha1(sb.toString());
+    }
+
+    /** Split the value of {@link Option#PREDEF} into names. */
+    static Set<String> parsePredef(String value) {
+        Set<String> names = new TreeSet<String>();
+        if (value != null) {
+            for (String name : value.split(",")) {
+                name = name.trim();
+                if (name.length() > 0) {
+                    names.add(name);
+                }
             }
         }
+        return Collections.unmodifiableSet(names);
     }
 }
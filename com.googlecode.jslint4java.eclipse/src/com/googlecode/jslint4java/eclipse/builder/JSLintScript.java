@@ -0,0 +1,366 @@
+package com.googlecode.jslint4java.eclipse.builder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+
+import org.mozilla.javascript.CompilerEnvirons;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.GeneratedClassLoader;
+import org.mozilla.javascript.NativeJavaPackage;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.ScriptableObject;
+import org.mozilla.javascript.optimizer.ClassCompiler;
+
+import com.googlecode.jslint4java.JSLint;
+import com.googlecode.jslint4java.JSLintBuilder;
+import com.googlecode.jslint4java.eclipse.JSLintLog;
+
+/**
+ * Make instances of {@link JSLint} from a single compiled copy of <i>jslint.js</i>.
+ * <p>
+ * {@link JSLintBuilder#fromDefault()} parses and compiles the whole script again for every
+ * instance, and gives each its own set of standard objects. Instead, in {@link Mode#COMPILED}
+ * mode we compile it to Java bytecode once, at Rhino's highest optimization level, and run the
+ * compiled script for each instance in a fresh scope whose prototype is a single sealed scope of
+ * standard objects. The bytecode is also saved in the plugin's state location, under a digest of
+ * the script and the compiler settings, so that after a restart it only has to be loaded. Each
+ * variant, counting instructions or not, keeps its own file.
+ * {@link Mode#INTERPRETED} mode is there for debugging. If any of this fails, we fall back to
+ * {@link JSLintBuilder}.
+ * <p>
+ * Unless told otherwise by {@link #setCountInstructions(boolean)}, the script counts
+ * instructions, so that {@link LintWatchdog} can stop it.
+ */
+public class JSLintScript {
+
+    /** How to run <i>jslint.js</i>. */
+    public enum Mode {
+        /** Compiled to Java bytecode, which is faster once the JIT has got to it. */
+        COMPILED(9),
+        /** Interpreted, which is slower but shows JavaScript stack traces and starts quicker. */
+        INTERPRETED(-1);
+
+        private final int optimizationLevel;
+
+        private Mode(int optimizationLevel) {
+            this.optimizationLevel = optimizationLevel;
+        }
+    }
+
+    /** The script prepared to run with one context factory. */
+    private static class Variant {
+        private final ContextFactory contextFactory;
+        private Script script;
+        /** The standard objects, shared by every instance. */
+        private ScriptableObject sharedScope;
+
+        Variant(ContextFactory contextFactory) {
+            this.contextFactory = contextFactory;
+        }
+    }
+
+    private static final String RESOURCE = "com/googlecode/jslint4java/jslint.js";
+
+    /** Bump this whenever the file format changes. */
+    private static final int VERSION = 1;
+
+    /** The name of the compiled script's main class, minus the key. */
+    private static final String CLASS_PREFIX = "com.googlecode.jslint4java.eclipse.compiled."
+            + "JSLint";
+
+    private final File cacheDir;
+
+    private final Mode mode;
+
+    /** The script with and without instruction counting. */
+    private final Variant counted;
+    private final Variant uncounted;
+
+    private volatile boolean countInstructions = true;
+
+    private final JSLintBuilder fallback = new JSLintBuilder();
+
+    /** JSLint's package private constructor, which takes an already initialised scope. */
+    private Constructor<JSLint> constructor;
+
+    /** Set if we couldn't compile the script, so shouldn't try again. */
+    private boolean broken;
+
+    /**
+     * Compile the script to bytecode.
+     *
+     * @param cacheDir where to save the compiled script, or null not to save it.
+     */
+    public JSLintScript(File cacheDir) {
+        this(cacheDir, Mode.COMPILED);
+    }
+
+    /**
+     * @param cacheDir where to save the compiled script, or null not to save it. Interpreted
+     *            scripts aren't saved.
+     * @param mode how to run the script.
+     */
+    public JSLintScript(File cacheDir, Mode mode) {
+        this.cacheDir = cacheDir;
+        this.mode = mode;
+        counted = new Variant(LintWatchdog.newContextFactory(mode.optimizationLevel, true));
+        uncounted = new Variant(LintWatchdog.newContextFactory(mode.optimizationLevel, false));
+        LintWatchdog.install(fallback);
+    }
+
+    /**
+     * Should new instances count instructions? If not, they run a little faster in
+     * {@link Mode#COMPILED} mode, but {@link LintWatchdog} can't stop them. Instances which
+     * already exist are unaffected.
+     */
+    public void setCountInstructions(boolean countInstructions) {
+        this.countInstructions = countInstructions;
+    }
+
+    /** Return a new, unconfigured instance of JSLint. */
+    public JSLint newJSLint() {
+        Variant variant = countInstructions ? counted : uncounted;
+        Script compiled = getScript(variant);
+        if (compiled != null) {
+            Context cx = variant.contextFactory.enterContext();
+            try {
+                ScriptableObject scope = newScope(cx, variant.sharedScope);
+                compiled.exec(cx, scope);
+                return constructor.newInstance(variant.contextFactory, scope);
+            } catch (InstantiationException e) {
+                failed(e);
+            } catch (IllegalAccessException e) {
+                failed(e);
+            } catch (InvocationTargetException e) {
+                failed(e);
+            } finally {
+                Context.exit();
+            }
+        }
+        return fallback.fromDefault();
+    }
+
+    /** Return {@code variant}'s script, compiling or loading it first if need be. */
+    private synchronized Script getScript(Variant variant) {
+        if (variant.script != null || broken) {
+            return variant.script;
+        }
+        try {
+            Constructor<JSLint> ctor = JSLint.class.getDeclaredConstructor(
+                    ContextFactory.class, ScriptableObject.class);
+            ctor.setAccessible(true);
+            byte[] source = readSource();
+            Context cx = variant.contextFactory.enterContext();
+            try {
+                Script script;
+                if (mode == Mode.INTERPRETED) {
+                    script = cx.compileString(new String(source, "UTF-8"), RESOURCE, 1, null);
+                } else {
+                    CompilerEnvirons env = new CompilerEnvirons();
+                    env.initFromContext(cx);
+                    String key = key(source, cx);
+                    boolean counted = cx.generateObserverCount;
+                    Object[] classes = load(counted, key);
+                    if (classes == null) {
+                        classes = new ClassCompiler(env).compileToClassFiles(new String(source,
+                                "UTF-8"), RESOURCE, 1, CLASS_PREFIX + key.substring(0, 12));
+                        save(counted, key, classes);
+                    }
+                    script = define(cx, classes);
+                }
+                variant.sharedScope = newSharedScope(cx, script);
+                variant.script = script;
+                constructor = ctor;
+            } finally {
+                Context.exit();
+            }
+        } catch (IOException e) {
+            failed(e);
+        } catch (NoSuchMethodException e) {
+            failed(e);
+        } catch (InstantiationException e) {
+            failed(e);
+        } catch (IllegalAccessException e) {
+            failed(e);
+        } catch (RuntimeException e) {
+            // Most likely the compiler can't handle the script.
+            failed(e);
+        }
+        return variant.script;
+    }
+
+    private synchronized void failed(Exception e) {
+        JSLintLog.error("Unable to use compiled " + RESOURCE + "; falling back to the default", e);
+        broken = true;
+        counted.script = null;
+        uncounted.script = null;
+    }
+
+    /**
+     * Return sealed standard objects for instances to share. <i>jslint.js</i> adds a few
+     * functions to them if they're missing, such as {@code String.prototype.entityify}, so the
+     * script is run once first, in a scope of its own, to add them before they're sealed.
+     */
+    private ScriptableObject newSharedScope(Context cx, Script script) {
+        ScriptableObject shared = cx.initStandardObjects();
+        script.exec(cx, newScope(cx, shared));
+        for (Object id : shared.getAllIds()) {
+            if (id instanceof String) {
+                seal(shared.get((String) id, shared));
+            }
+        }
+        shared.sealObject();
+        return shared;
+    }
+
+    /**
+     * Seal a standard object, and its prototype if it's a constructor. Java packages are left
+     * alone, as they're filled in as they're used.
+     */
+    private void seal(Object value) {
+        if (value instanceof ScriptableObject && !(value instanceof NativeJavaPackage)) {
+            ScriptableObject object = (ScriptableObject) value;
+            if (object instanceof Function) {
+                seal(object.get("prototype", object));
+            }
+            object.sealObject();
+        }
+    }
+
+    /** Return a new top level scope, which looks up the standard objects in {@code shared}. */
+    private ScriptableObject newScope(Context cx, ScriptableObject shared) {
+        ScriptableObject scope = (ScriptableObject) cx.newObject(shared);
+        scope.setPrototype(shared);
+        scope.setParentScope(null);
+        return scope;
+    }
+
+    private byte[] readSource() throws IOException {
+        InputStream in = JSLint.class.getClassLoader().getResourceAsStream(RESOURCE);
+        if (in == null) {
+            throw new IOException("Can't find " + RESOURCE);
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /** Identify the bytecode that compiling {@code source} in {@code cx} would produce. */
+    private String key(byte[] source, Context cx) {
+        return Digests.sha1(Digests.sha1(source) + ";" + cx.getImplementationVersion() + ";"
+                + cx.getOptimizationLevel() + ";" + cx.generateObserverCount);
+    }
+
+    /** Define {@code classes} (alternating names and bytecode), and instantiate the first. */
+    private Script define(Context cx, Object[] classes) throws InstantiationException,
+            IllegalAccessException {
+        GeneratedClassLoader loader = cx.createClassLoader(JSLintScript.class.getClassLoader());
+        Class<?> main = null;
+        for (int i = 0; i < classes.length; i += 2) {
+            Class<?> c = loader.defineClass((String) classes[i], (byte[]) classes[i + 1]);
+            loader.linkClass(c);
+            if (main == null) {
+                main = c;
+            }
+        }
+        return (Script) main.newInstance();
+    }
+
+    /** The start of the names of the files saved for the variant which {@code counted} or not. */
+    private static String cachePrefix(boolean counted) {
+        return counted ? "jslint-counted-" : "jslint-uncounted-";
+    }
+
+    private File cacheFile(boolean counted, String key) {
+        return new File(cacheDir, cachePrefix(counted) + key + ".bin");
+    }
+
+    /** Read back previously compiled classes, or return null if there are none. */
+    private Object[] load(boolean counted, String key) {
+        File file = cacheDir == null ? null : cacheFile(counted, key);
+        if (file == null || !file.isFile()) {
+            return null;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(file)));
+            try {
+                if (in.readInt() != VERSION) {
+                    return null;
+                }
+                Object[] classes = new Object[in.readInt() * 2];
+                for (int i = 0; i < classes.length; i += 2) {
+                    classes[i] = in.readUTF();
+                    byte[] bytes = new byte[in.readInt()];
+                    in.readFully(bytes);
+                    classes[i + 1] = bytes;
+                }
+                return classes;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            // Not fatal; we'll just compile it again.
+            JSLintLog.error("Unable to read compiled " + RESOURCE, e);
+            return null;
+        }
+    }
+
+    /**
+     * Save compiled classes under {@code key}, replacing any the same variant saved under another
+     * key. The other variant's are kept, as they're still of use.
+     */
+    private void save(boolean counted, String key, Object[] classes) {
+        if (cacheDir == null || !(cacheDir.isDirectory() || cacheDir.mkdirs())) {
+            return;
+        }
+        File[] stale = cacheDir.listFiles();
+        if (stale != null) {
+            for (File f : stale) {
+                // Including any saved before there were variants.
+                if (f.getName().startsWith("jslint-")
+                        && !f.getName().startsWith(cachePrefix(!counted))) {
+                    f.delete();
+                }
+            }
+        }
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(cacheFile(counted, key))));
+            try {
+                out.writeInt(VERSION);
+                out.writeInt(classes.length / 2);
+                for (int i = 0; i < classes.length; i += 2) {
+                    byte[] bytes = (byte[]) classes[i + 1];
+                    out.writeUTF((String) classes[i]);
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            JSLintLog.error("Unable to save compiled " + RESOURCE, e);
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.googlecode.jslint4java.eclipse.builder;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IProjectDescription;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceProxy;
+import org.eclipse.core.resources.IResourceProxyVisitor;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceDescription;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.equinox.app.IApplication;
+import org.eclipse.equinox.app.IApplicationContext;
+
+import com.googlecode.jslint4java.Issue;
+import com.googlecode.jslint4java.JSLintResult;
+import com.googlecode.jslint4java.eclipse.JSLintPlugin;
+import com.googlecode.jslint4java.eclipse.builder.LintExecutor.FileResult;
+import com.googlecode.jslint4java.formatter.CheckstyleXmlFormatter;
+import com.googlecode.jslint4java.formatter.JSLintResultFormatter;
+import com.googlecode.jslint4java.formatter.JUnitXmlFormatter;
+
+/**
+ * Lint from the command line, e.g. on a build server, with exactly the same engine, options,
+ * exclusions and output folders as the builder. Needs no display:
+ *
+ * <pre>
+ * eclipse -nosplash -application com.googlecode.jslint4java.eclipse.lint \
+ *     -data /path/to/workspace [-dir /path/to/sources] [-format checkstyle|junit] \
+ *     [-out report.xml] [-incremental]
+ * </pre>
+ *
+ * Without {@code -dir}, every open project in the workspace with the JSLint nature is linted.
+ * With it, the directory is opened as a project (unless it already is one), so its own
+ * <i>.settings</i> apply. Workspace options come from the workspace, as usual, or from
+ * {@code -pluginCustomization}.
+ * <p>
+ * Files are linted on as many threads as the <i>lint_threads</i> preference allows, which
+ * defaults to the number of processors, and results are written as they arrive, to {@code -out}
+ * or stdout. With {@code -incremental}, the result cache in the workspace's metadata is used and
+ * saved, so keeping the workspace between runs means only changed files are linted. The exit
+ * code is 0 if there were no issues, 1 if there were and 2 if we couldn't lint at all.
+ */
+public class LintApplication implements IApplication {
+
+    /** There were issues. */
+    public static final Integer EXIT_ISSUES = Integer.valueOf(1);
+
+    /** Bad arguments, or something else stopped us from linting. */
+    public static final Integer EXIT_FAILED = Integer.valueOf(2);
+
+    /** How many files' results to write at a time. */
+    private static final int BATCH_SIZE = 100;
+
+    /** Writes each file's results as they arrive, counting the issues. */
+    private static class ReportWriter implements LintExecutor.ResultHandler {
+        private final Writer out;
+        private final JSLintResultFormatter formatter;
+        private int issues;
+        private IOException failure;
+
+        ReportWriter(Writer out, JSLintResultFormatter formatter) {
+            this.out = out;
+            this.formatter = formatter;
+        }
+
+        public void handle(List<FileResult> batch) {
+            for (FileResult result : batch) {
+                write(formatter.format(toResult(result)));
+            }
+            flush();
+        }
+
+        void header() {
+            write(formatter.header());
+        }
+
+        void footer() {
+            write(formatter.footer());
+            flush();
+        }
+
+        private void write(String s) {
+            if (s == null || failure != null) {
+                return;
+            }
+            try {
+                out.write(s);
+                out.write('\n');
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+
+        private void flush() {
+            try {
+                out.flush();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+
+        /** Turn our result back into JSLint's, so that its formatters can be used. */
+        private JSLintResult toResult(FileResult result) {
+            String systemId = result.getFile().getFullPath().toString();
+            JSLintResult.ResultBuilder builder = new JSLintResult.ResultBuilder(systemId);
+            for (Issue issue : result.getIssues()) {
+                builder.addIssue(issue);
+                issues++;
+            }
+            if (result.getNotice() != null) {
+                // The file wasn't linted, which the build should hear about.
+                builder.addIssue(new Issue.IssueBuilder(systemId, 0, 0, result.getNotice())
+                        .build());
+                issues++;
+            }
+            return builder.build();
+        }
+    }
+
+    public Object start(IApplicationContext context) throws Exception {
+        String[] args = (String[]) context.getArguments().get(
+                IApplicationContext.APPLICATION_ARGS);
+        String dir = stringArg(args, "-dir", null);
+        String format = stringArg(args, "-format", "checkstyle");
+        String outFile = stringArg(args, "-out", null);
+        boolean incremental = hasArg(args, "-incremental");
+
+        JSLintResultFormatter formatter;
+        if (format.equals("checkstyle")) {
+            formatter = new CheckstyleXmlFormatter();
+        } else if (format.equals("junit")) {
+            formatter = new JUnitXmlFormatter();
+        } else {
+            System.err.println("Unknown format: " + format + " (use checkstyle or junit)");
+            return EXIT_FAILED;
+        }
+
+        IWorkspace workspace = ResourcesPlugin.getWorkspace();
+        // We don't want the builder running alongside us.
+        IWorkspaceDescription description = workspace.getDescription();
+        boolean autoBuilding = description.isAutoBuilding();
+        description.setAutoBuilding(false);
+        workspace.setDescription(description);
+        try {
+            List<IProject> projects = new ArrayList<IProject>();
+            if (dir != null) {
+                if (!new File(dir).isDirectory()) {
+                    System.err.println("Not a directory: " + dir);
+                    return EXIT_FAILED;
+                }
+                IProject project = openDirectory(workspace, new File(dir));
+                if (project == null) {
+                    return EXIT_FAILED;
+                }
+                projects.add(project);
+            } else {
+                for (IProject project : workspace.getRoot().getProjects()) {
+                    if (project.isOpen() && project.hasNature(JSLintNature.NATURE_ID)) {
+                        projects.add(project);
+                    }
+                }
+            }
+            return lint(projects, formatter, outFile, incremental);
+        } finally {
+            description.setAutoBuilding(autoBuilding);
+            workspace.setDescription(description);
+        }
+    }
+
+    public void stop() {
+    }
+
+    private Object lint(List<IProject> projects, JSLintResultFormatter formatter,
+            String outFile, boolean incremental) throws CoreException, IOException {
+        JSLintPlugin plugin = JSLintPlugin.getDefault();
+        LintService lintService = plugin.getLintService();
+        List<IFile> files = new ArrayList<IFile>();
+        for (IProject project : projects) {
+            // The sources have most likely changed behind the workspace's back.
+            project.refreshLocal(IResource.DEPTH_INFINITE, null);
+            collect(project, lintService.getExcluder(), files);
+        }
+
+        LintResultCache resultCache = plugin.getResultCache();
+        if (!incremental) {
+            // Somewhere to put results which is never read or saved.
+            File scratch = File.createTempFile("jslint4java", ".bin");
+            scratch.delete();
+            resultCache = new LintResultCache(scratch);
+        }
+
+        OutputStream stream = outFile == null ? System.out : new FileOutputStream(outFile);
+        Writer out = new BufferedWriter(new OutputStreamWriter(stream, "UTF-8"));
+        ReportWriter report = new ReportWriter(out, formatter);
+        LintMetrics metrics = plugin.getMetrics();
+        BuildStats stats = metrics.startBuild("lint application");
+        long start = System.nanoTime();
+        try {
+            report.header();
+            // No marker snapshot: reports quote the evidence, which it doesn't keep.
+            LintExecutor executor = new LintExecutor(lintService, resultCache,
+                    plugin.getReadCounters(), plugin.getPreFilter(), plugin.getQuarantine(),
+                    plugin.getGlobalsIndex(), null, stats,
+                    Runtime.getRuntime().availableProcessors(), BATCH_SIZE);
+            executor.lint(files, report, new NullProgressMonitor());
+            report.footer();
+        } finally {
+            metrics.finishBuild(stats, System.nanoTime() - start);
+            if (outFile == null) {
+                out.flush();
+            } else {
+                out.close();
+            }
+        }
+        if (incremental) {
+            resultCache.save();
+        }
+        if (report.failure != null) {
+            throw report.failure;
+        }
+        System.err.printf("jslint4java: %d files, %d issues%n", files.size(), report.issues);
+        return report.issues > 0 ? EXIT_ISSUES : EXIT_OK;
+    }
+
+    /**
+     * Add the JavaScript files in {@code project} which the builder would lint to
+     * {@code files}, skipping the same folders and exclusions as it does.
+     */
+    private void collect(IProject project, final Excluder excluder, final List<IFile> files)
+            throws CoreException {
+        final Set<IPath> outputFolders = JSLintBuilder.outputFolders(project);
+        project.accept(new IResourceProxyVisitor() {
+            public boolean visit(IResourceProxy proxy) {
+                switch (proxy.getType()) {
+                case IResource.FILE:
+                    if (!proxy.isDerived() && proxy.getName().endsWith(".js")) {
+                        IFile file = (IFile) proxy.requestResource();
+                        if (!excluder.isExcluded(file)) {
+                            files.add(file);
+                        }
+                    }
+                    return false;
+                case IResource.FOLDER:
+                    IPath path = proxy.requestFullPath();
+                    if (proxy.isDerived() || outputFolders.contains(path)
+                            || excluder.isExcludedFolder(path)) {
+                        return false;
+                    }
+                    break;
+                }
+                return true;
+            }
+        }, IResource.NONE);
+    }
+
+    /**
+     * Return a project for {@code dir}, creating and opening it if need be. Returns null if
+     * there's already a different project with the same name.
+     */
+    private IProject openDirectory(IWorkspace workspace, File dir) throws CoreException {
+        IPath location = new Path(dir.getAbsolutePath());
+        for (IProject project : workspace.getRoot().getProjects()) {
+            if (location.equals(project.getLocation())) {
+                if (!project.isOpen()) {
+                    project.open(null);
+                }
+                return project;
+            }
+        }
+        IProject project = workspace.getRoot().getProject(dir.getName());
+        if (project.exists()) {
+            System.err.println("There is already a project called " + dir.getName() + " at "
+                    + project.getLocation());
+            return null;
+        }
+        IProjectDescription description = workspace.newProjectDescription(project.getName());
+        description.setLocation(location);
+        project.create(description, null);
+        project.open(null);
+        return project;
+    }
+
+    private String stringArg(String[] args, String name, String defaultValue) {
+        if (args != null) {
+            for (int i = 0; i < args.length - 1; i++) {
+                if (args[i].equals(name)) {
+                    return args[i + 1];
+                }
+            }
+        }
+        return defaultValue;
+    }
+
+    private boolean hasArg(String[] args, String name) {
+        if (args != null) {
+            for (String arg : args) {
+                if (arg.equals(name)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,17 @@
+package com.googlecode.jslint4java.eclipse.builder;
+
+import com.googlecode.jslint4java.JSLintResult;
+
+/**
+ * Something which lints JavaScript with a fixed set of options, reporting what it finds the way
+ * JSLint does. Instances come from a {@link LintEngineFactory}, and are pooled by the
+ * {@link JSLintProvider}, so each is only used by one thread at a time.
+ */
+public interface LintEngine {
+
+    /**
+     * Lint {@code source}, which came from {@code systemId}. The result's issues, and the global
+     * names it declares or uses, are all that's looked at.
+     */
+    JSLintResult lint(String systemId, String source);
+}
@@ -0,0 +1,19 @@
+package com.googlecode.jslint4java.eclipse.builder;
+
+import java.util.Map;
+
+import com.googlecode.jslint4java.Option;
+
+/**
+ * Creates {@link LintEngine}s. Contributed through the
+ * <i>com.googlecode.jslint4java.eclipse.engines</i> extension point, so implementations need a
+ * public no-argument constructor. A single instance is shared by every thread.
+ */
+public interface LintEngineFactory {
+
+    /**
+     * Return a new engine which lints with {@code options}. Options which the engine doesn't
+     * support are ignored.
+     */
+    LintEngine newEngine(Map<Option, String> options);
+}
@@ -0,0 +1,131 @@
+package com.googlecode.jslint4java.eclipse.builder;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IConfigurationElement;
+import org.eclipse.core.runtime.IExtensionRegistry;
+import org.eclipse.core.runtime.Platform;
+import org.osgi.framework.Bundle;
+
+import com.googlecode.jslint4java.eclipse.JSLintLog;
+import com.googlecode.jslint4java.eclipse.JSLintPlugin;
+
+/**
+ * The {@link LintEngine}s contributed through the <i>engines</i> extension point, by id. Which
+ * one is used is an option like any other, so it can be set for the workspace or for a project,
+ * and changing it re-lints whatever it applies to.
+ * <p>
+ * The default engine, JSLint itself, is always available, even without an extension registry.
+ * Its factory is supplied by the {@link LintService}, so that every instance shares one compiled
+ * copy of <i>jslint.js</i>; its contribution only gives it a name. The factories of other
+ * engines aren't created until they're first used.
+ */
+public class LintEngines {
+
+    /** Which engine to lint with. */
+    public static final String LINT_ENGINE_PREFERENCE = "lint_engine";
+
+    /** The id of the default engine. */
+    public static final String DEFAULT_ENGINE = "jslint";
+
+    private static final String EXTENSION_POINT = JSLintPlugin.PLUGIN_ID + ".engines";
+
+    /** An engine from the extension registry. */
+    private static class Contribution {
+        private final IConfigurationElement element;
+        private final String name;
+        private LintEngineFactory factory;
+
+        Contribution(IConfigurationElement element) {
+            this.element = element;
+            this.name = element.getAttribute("name");
+        }
+    }
+
+    private final LintEngineFactory defaultFactory;
+
+    /** Contributions by id, or null if the registry hasn't been read yet. */
+    private Map<String, Contribution> contributions;
+
+    /** @param defaultFactory what makes instances of the default engine. */
+    public LintEngines(LintEngineFactory defaultFactory) {
+        this.defaultFactory = defaultFactory;
+    }
+
+    /** Return {@code id} if there's an engine with that id, or the default engine's id if not. */
+    public synchronized String resolve(String id) {
+        return id != null && contributions().containsKey(id) ? id : DEFAULT_ENGINE;
+    }
+
+    /** Return the name of each engine, by id, with the default first. */
+    public synchronized Map<String, String> getNames() {
+        Map<String, String> names = new LinkedHashMap<String, String>();
+        names.put(DEFAULT_ENGINE, "JSLint");
+        for (Map.Entry<String, Contribution> entry : contributions().entrySet()) {
+            names.put(entry.getKey(), entry.getValue().name);
+        }
+        return Collections.unmodifiableMap(names);
+    }
+
+    /**
+     * Return the version of the bundle which contributed engine {@code id}, which is part of the
+     * option fingerprint, so that an upgraded engine doesn't reuse old results.
+     */
+    public synchronized String getVersion(String id) {
+        Contribution contribution = contributions().get(id);
+        if (contribution == null) {
+            return "";
+        }
+        Bundle bundle = Platform.getBundle(contribution.element.getContributor().getName());
+        return bundle == null ? "" : bundle.getVersion().toString();
+    }
+
+    /**
+     * Return the factory for engine {@code id}. If it can't be created, the failure is logged
+     * and the default engine's is returned instead.
+     */
+    public synchronized LintEngineFactory getFactory(String id) {
+        Contribution contribution = contributions().get(id);
+        if (DEFAULT_ENGINE.equals(id) || contribution == null) {
+            return defaultFactory;
+        }
+        if (contribution.factory == null) {
+            try {
+                contribution.factory = (LintEngineFactory) contribution.element
+                        .createExecutableExtension("class");
+            } catch (CoreException e) {
+                JSLintLog.error(e);
+                contribution.factory = defaultFactory;
+            } catch (ClassCastException e) {
+                JSLintLog.error("Lint engine " + id + " isn't a LintEngineFactory", e);
+                contribution.factory = defaultFactory;
+            }
+        }
+        return contribution.factory;
+    }
+
+    private Map<String, Contribution> contributions() {
+        if (contributions != null) {
+            return contributions;
+        }
+        contributions = new LinkedHashMap<String, Contribution>();
+        IExtensionRegistry registry = Platform.getExtensionRegistry();
+        if (registry == null) {
+            // Not running in Eclipse, as in the benchmarks.
+            return contributions;
+        }
+        for (IConfigurationElement element : registry
+                .getConfigurationElementsFor(EXTENSION_POINT)) {
+            String id = element.getAttribute("id");
+            if (id == null || contributions.containsKey(id)) {
+                JSLintLog.error("Ignoring lint engine with missing or duplicate id: " + id, null);
+                continue;
+            }
+            contributions.put(id, new Contribution(element));
+        }
+        return contributions;
+    }
+}
@@ -0,0 +1,384 @@
+package com.googlecode.jslint4java.eclipse.builder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+import com.googlecode.jslint4java.Issue;
+import com.googlecode.jslint4java.JSLintResult;
+import com.googlecode.jslint4java.eclipse.JSLintLog;
+
+/**
+ * Lint a collection of files using a bounded pool of worker threads, subject to the
+ * {@link LintService}'s workspace wide limit on concurrent lints. A {@link LintEngine} is not
+ * safe to share between threads, so each worker checks out its own instance from the
+ * {@link JSLintProvider}, unless the {@link LintResultCache} already knows the answer. Results
+ * are handed back in batches on the calling thread (the builder), so that markers can be applied
+ * from within the build's workspace operation.
+ * <p>
+ * Each file is linted under the {@link LintWatchdog}, so a file which takes too long is abandoned
+ * with a notice rather than holding up the build, and cancelling the build stops any lints in
+ * progress. Files which keep timing out are put in the {@link LintQuarantine}.
+ * <p>
+ * Given a {@link MarkerSnapshot}, a file which hasn't been touched since it was last linted with
+ * the same options isn't even read: its issues are simply handed back again.
+ */
+class LintExecutor {
+
+    /** The issues found in a single file. */
+    static class FileResult {
+        private final IFile file;
+        private final List<Issue> issues;
+        private final String notice;
+
+        FileResult(IFile file, List<Issue> issues) {
+            this(file, issues, null);
+        }
+
+        FileResult(IFile file, List<Issue> issues, String notice) {
+            this.file = file;
+            this.issues = issues;
+            this.notice = notice;
+        }
+
+        public IFile getFile() {
+            return file;
+        }
+
+        public List<Issue> getIssues() {
+            return issues;
+        }
+
+        /** Something to tell the user about the file as a whole, or null. */
+        public String getNotice() {
+            return notice;
+        }
+    }
+
+    /** Receives batches of results on the thread which called {@link LintExecutor#lint}. */
+    interface ResultHandler {
+        void handle(List<FileResult> batch);
+    }
+
+    /**
+     * A worker pulls files off the shared queue until there are none left. It only checks out an
+     * engine once it finds a file which passes the {@link LintPreFilter} and isn't in
+     * the result cache.
+     */
+    private class Worker implements Runnable {
+        private final BlockingQueue<IFile> pending;
+        private final BlockingQueue<FileResult> done;
+        private final ContentReader reader = new ContentReader(readCounters);
+        private LintEngine lint;
+
+        Worker(BlockingQueue<IFile> pending, BlockingQueue<FileResult> done) {
+            this.pending = pending;
+            this.done = done;
+        }
+
+        public void run() {
+            try {
+                IFile file;
+                while ((file = pending.poll()) != null) {
+                    FileResult result = new FileResult(file, Collections.<Issue> emptyList());
+                    try {
+                        result = lintFile(file);
+                    } catch (OperationCanceledException e) {
+                        // The builder has already given up on us.
+                        return;
+                    } catch (Throwable e) {
+                        // Including errors, e.g. Rhino overflowing the stack on deep nesting.
+                        JSLintLog.error("Unable to lint " + file.getFullPath(), e);
+                        if (lint != null) {
+                            // It may have been left half way through a lint.
+                            discardLint();
+                        }
+                    } finally {
+                        // Always report back, or the builder thread will wait forever.
+                        done.add(result);
+                    }
+                }
+            } finally {
+                if (lint != null) {
+                    lintProvider.checkIn(lint);
+                }
+            }
+        }
+
+        /**
+         * Return the issues in {@code file}, either from the marker snapshot, from the result
+         * cache or by running JSLint over it.
+         */
+        private FileResult lintFile(IFile file) {
+            String systemId = file.getFullPath().toString();
+            try {
+                String skipReason = preFilter.check(file);
+                if (skipReason != null) {
+                    skipped(file, skipReason);
+                    return new FileResult(file, Collections.<Issue> emptyList());
+                }
+                IProject project = file.getProject();
+                String fingerprint = lintProvider.getOptionFingerprint(project);
+                String charset = file.getCharset();
+                String settings = null;
+                long[] stamps = null;
+                if (snapshot != null) {
+                    settings = fingerprint + ":" + charset + ":" + preFilter.getSettings();
+                    List<Issue> restored = snapshot.get(file, settings);
+                    if (restored != null) {
+                        preFilter.linted(file);
+                        stats.restored();
+                        return new FileResult(file, restored);
+                    }
+                    stamps = MarkerSnapshot.stampsOf(file);
+                }
+                long start = System.nanoTime();
+                ByteBuffer contents = reader.read(file);
+                stats.read(System.nanoTime() - start);
+                String digest = Digests.sha1(contents.duplicate());
+                skipReason = preFilter.check(digest, contents);
+                if (skipReason != null) {
+                    skipped(file, skipReason);
+                    return new FileResult(file, Collections.<Issue> emptyList());
+                }
+                if (quarantine.isQuarantined(file, digest)) {
+                    skipped(file, QUARANTINED);
+                    return new FileResult(file, Collections.<Issue> emptyList(), QUARANTINED);
+                }
+                preFilter.linted(file);
+                if (snapshot != null) {
+                    List<Issue> restored = snapshot.get(file, stamps, digest, settings);
+                    if (restored != null) {
+                        stats.cached();
+                        return new FileResult(file, restored);
+                    }
+                }
+                String key = LintResultCache.key(digest, charset,
+                        lintProvider.getBaseFingerprint(project));
+                Set<String> predef = lintProvider.getPredef(project);
+                LintResultCache.Result cached = resultCache.get(key, predef, systemId);
+                if (cached != null) {
+                    stats.cached();
+                    globalsIndex.update(file, cached.getGlobals());
+                    remember(file, stamps, digest, settings, cached.getIssues());
+                    return new FileResult(file, cached.getIssues());
+                }
+                start = System.nanoTime();
+                String source = reader.decode(contents, charset);
+                stats.read(System.nanoTime() - start);
+                JSLintResult result;
+                lintService.acquire(workerMonitor);
+                try {
+                    if (lint != null && !fingerprint.equals(lintProvider
+                            .getOptionFingerprint(lint))) {
+                        // The options have changed since we checked it out.
+                        lintProvider.checkIn(lint);
+                        lint = null;
+                    }
+                    if (lint == null) {
+                        lint = lintProvider.checkOut(project);
+                    }
+                    start = System.nanoTime();
+                    result = lintService.lint(lint, project, systemId, source, workerMonitor);
+                } catch (LintWatchdog.TimeoutException e) {
+                    return timedOut(file, digest, e.getMessage());
+                } catch (OperationCanceledException e) {
+                    discardLint();
+                    throw e;
+                } finally {
+                    lintService.release();
+                }
+                stats.linted(systemId, System.nanoTime() - start);
+                quarantine.linted(file);
+                List<Issue> issues = result.getIssues();
+                Set<String> globals = GlobalsIndex.globalsOf(result);
+                globalsIndex.update(file, globals);
+                // Only if this instance has the options we looked up; they may have changed.
+                if (fingerprint.equals(lintProvider.getOptionFingerprint(lint))) {
+                    resultCache.put(key, predef, issues, globals);
+                    remember(file, stamps, digest, settings, issues);
+                }
+                return new FileResult(file, issues);
+            } catch (IOException e) {
+                JSLintLog.error(e);
+            } catch (CoreException e) {
+                JSLintLog.error(e);
+            }
+            return new FileResult(file, Collections.<Issue> emptyList());
+        }
+
+        private void remember(IFile file, long[] stamps, String digest, String settings,
+                List<Issue> issues) {
+            if (snapshot != null) {
+                snapshot.put(file, stamps, digest, settings, issues);
+            }
+        }
+
+        /** Give up on {@code file}, whose content has the digest {@code digest}. */
+        private FileResult timedOut(IFile file, String digest, String message) {
+            discardLint();
+            stats.timedOut();
+            String notice = quarantine.timedOut(file, digest) ? QUARANTINED : message;
+            JSLintLog.info("Not linting %s: %s", file.getFullPath(), message);
+            return new FileResult(file, Collections.<Issue> emptyList(), notice);
+        }
+
+        /** An aborted lint may have left our instance in a mess, so don't reuse it. */
+        private void discardLint() {
+            lintProvider.discard(lint);
+            lint = null;
+        }
+
+        private void skipped(IFile file, String reason) {
+            preFilter.skipped(file, reason);
+            stats.skipped();
+        }
+    }
+
+    /** The notice on files which are in the {@link LintQuarantine}. */
+    private static final String QUARANTINED = "JSLint keeps timing out on this file;"
+            + " it won't be linted again until it changes";
+
+    /** How long to wait for a result before checking for cancellation. */
+    private static final long POLL_MILLIS = 100;
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    private static final ThreadFactory threadFactory = new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "jslint4java worker " + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    };
+
+    private final LintService lintService;
+    private final JSLintProvider lintProvider;
+    private final LintResultCache resultCache;
+    private final ReadCounters readCounters;
+    private final LintPreFilter preFilter;
+    private final LintQuarantine quarantine;
+    private final GlobalsIndex globalsIndex;
+    private final MarkerSnapshot snapshot;
+    private final BuildStats stats;
+    private final int threads;
+    private final int batchSize;
+
+    /** Cancelled when the builder's monitor is, to stop any lints in progress. */
+    private final IProgressMonitor workerMonitor = new NullProgressMonitor() {
+        private volatile boolean cancelled;
+
+        @Override
+        public boolean isCanceled() {
+            return cancelled;
+        }
+
+        @Override
+        public void setCanceled(boolean cancelled) {
+            this.cancelled = cancelled;
+        }
+    };
+
+    /**
+     * @param quarantine where to record files which time out.
+     * @param globalsIndex where to record the global names each file uses.
+     * @param snapshot where to record each file's issues, and restore them from if it hasn't
+     *            changed, or null to always read files.
+     * @param stats where to record what happened to each file.
+     * @param threads how many workers to use.
+     * @param batchSize how many results to accumulate before passing them to the
+     *            {@link ResultHandler}.
+     */
+    LintExecutor(LintService lintService, LintResultCache resultCache,
+            ReadCounters readCounters, LintPreFilter preFilter, LintQuarantine quarantine,
+            GlobalsIndex globalsIndex, MarkerSnapshot snapshot, BuildStats stats, int threads,
+            int batchSize) {
+        this.lintService = lintService;
+        this.lintProvider = lintService.getLintProvider();
+        this.resultCache = resultCache;
+        this.readCounters = readCounters;
+        this.preFilter = preFilter;
+        this.quarantine = quarantine;
+        this.globalsIndex = globalsIndex;
+        this.snapshot = snapshot;
+        this.stats = stats;
+        this.threads = Math.max(1, threads);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Lint {@code files}, passing the results to {@code handler} in batches. Blocks until all
+     * files have been linted.
+     *
+     * @throws OperationCanceledException if {@code monitor} is cancelled.
+     */
+    public void lint(List<IFile> files, ResultHandler handler, IProgressMonitor monitor) {
+        if (files.isEmpty()) {
+            return;
+        }
+        BlockingQueue<IFile> pending = new LinkedBlockingQueue<IFile>(files);
+        BlockingQueue<FileResult> done = new LinkedBlockingQueue<FileResult>();
+        int workers = Math.min(threads, files.size());
+        ExecutorService pool = Executors.newFixedThreadPool(workers, threadFactory);
+        try {
+            for (int i = 0; i < workers; i++) {
+                pool.execute(new Worker(pending, done));
+            }
+            List<FileResult> batch = new ArrayList<FileResult>();
+            int remaining = files.size();
+            while (remaining > 0) {
+                if (monitor.isCanceled()) {
+                    // Stop the workers picking up anything new, and abandon what they're doing.
+                    pending.clear();
+                    workerMonitor.setCanceled(true);
+                    throw new OperationCanceledException();
+                }
+                FileResult result = done.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (result == null) {
+                    // Nothing ready; don't sit on what we already have.
+                    flush(batch, handler);
+                    continue;
+                }
+                remaining--;
+                monitor.subTask("Linting " + result.getFile().getName());
+                monitor.worked(1);
+                batch.add(result);
+                if (batch.size() >= batchSize) {
+                    flush(batch, handler);
+                }
+            }
+            flush(batch, handler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            workerMonitor.setCanceled(true);
+            throw new OperationCanceledException();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void flush(List<FileResult> batch, ResultHandler handler) {
+        if (!batch.isEmpty()) {
+            handler.handle(new ArrayList<FileResult>(batch));
+            batch.clear();
+        }
+    }
+
+}
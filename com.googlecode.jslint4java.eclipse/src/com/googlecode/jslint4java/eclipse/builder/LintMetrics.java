@@ -0,0 +1,273 @@
+package com.googlecode.jslint4java.eclipse.builder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.eclipse.core.runtime.Platform;
+
+import com.googlecode.jslint4java.eclipse.JSLintLog;
+import com.googlecode.jslint4java.eclipse.JSLintPlugin;
+
+/**
+ * Record where build time goes. Each build gets its own {@link BuildStats}, which is added to the
+ * running total when the build finishes. The figures are available from
+ * {@link JSLintPlugin#getMetrics()}, over JMX as
+ * <i>com.googlecode.jslint4java.eclipse:type=LintMetrics</i>, and, if the
+ * <i>metrics_dump</i> preference is set, in <i>metrics.json</i> in the plugin's state location
+ * after every build. Alongside them go the plugin's {@link ReadCounters} and
+ * {@link DeltaCounters}.
+ */
+public class LintMetrics implements LintMetricsMBean {
+
+    /** Should the metrics be written out after every build? */
+    public static final String METRICS_DUMP_PREFERENCE = "metrics_dump";
+
+    private static final String OBJECT_NAME = JSLintPlugin.PLUGIN_ID + ":type=LintMetrics";
+
+    private final File dumpFile;
+    private final ReadCounters readCounters;
+    private final DeltaCounters deltaCounters;
+
+    private volatile BuildStats totals = new BuildStats("total");
+    private volatile BuildStats lastBuild;
+    private final AtomicLong instancesCreated = new AtomicLong();
+    private final AtomicLong instanceCreationNanos = new AtomicLong();
+
+    /**
+     * @param dumpFile where to write the metrics as JSON.
+     * @param readCounters how much has been read for linting, to report with the rest.
+     * @param deltaCounters what incremental builds did with their deltas, likewise.
+     */
+    public LintMetrics(File dumpFile, ReadCounters readCounters, DeltaCounters deltaCounters) {
+        this.dumpFile = dumpFile;
+        this.readCounters = readCounters;
+        this.deltaCounters = deltaCounters;
+    }
+
+    /** Make these metrics available over JMX. */
+    public void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (JMException e) {
+            JSLintLog.error(e);
+        }
+    }
+
+    /** Stop making these metrics available over JMX. */
+    public void unregister() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            JSLintLog.error(e);
+        }
+    }
+
+    /** Return the totals over all builds. */
+    public BuildStats getTotals() {
+        return totals;
+    }
+
+    /** Return the figures for the most recent build, or null if there hasn't been one. */
+    public BuildStats getLastBuild() {
+        return lastBuild;
+    }
+
+    /** Start recording a build of {@code project}. */
+    BuildStats startBuild(String project) {
+        return new BuildStats(project);
+    }
+
+    /** Finish recording {@code build}, which took {@code nanos}. */
+    void finishBuild(BuildStats build, long nanos) {
+        build.finished(nanos);
+        totals.add(build);
+        lastBuild = build;
+        if (Platform.getPreferencesService().getBoolean(JSLintPlugin.PLUGIN_ID,
+                METRICS_DUMP_PREFERENCE, false, null)) {
+            dump();
+        }
+    }
+
+    /** Record that it took {@code nanos} to create and configure an instance of JSLint. */
+    void instanceCreated(long nanos) {
+        instancesCreated.incrementAndGet();
+        instanceCreationNanos.addAndGet(nanos);
+    }
+
+    public long getBuilds() {
+        return totals.getBuilds();
+    }
+
+    public long getFilesVisited() {
+        return totals.getFilesVisited();
+    }
+
+    public long getFilesExcluded() {
+        return totals.getFilesExcluded();
+    }
+
+    public long getFilesSkipped() {
+        return totals.getFilesSkipped();
+    }
+
+    public long getFilesCached() {
+        return totals.getFilesCached();
+    }
+
+    public long getFilesRestored() {
+        return totals.getFilesRestored();
+    }
+
+    public long getFilesLinted() {
+        return totals.getFilesLinted();
+    }
+
+    public long getFilesTimedOut() {
+        return totals.getFilesTimedOut();
+    }
+
+    public long getReadMillis() {
+        return totals.getReadMillis();
+    }
+
+    public long getLintMillis() {
+        return totals.getLintMillis();
+    }
+
+    public long getMarkerMillis() {
+        return totals.getMarkerMillis();
+    }
+
+    public double getLintP50Millis() {
+        return totals.getLintLatencyMillis(0.5);
+    }
+
+    public double getLintP95Millis() {
+        return totals.getLintLatencyMillis(0.95);
+    }
+
+    public double getLintMaxMillis() {
+        return totals.getMaxLintMillis();
+    }
+
+    public String[] getSlowestFiles() {
+        List<BuildStats.FileTime> slowest = totals.getSlowestFiles();
+        String[] result = new String[slowest.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = slowest.get(i).toString();
+        }
+        return result;
+    }
+
+    public long getInstancesCreated() {
+        return instancesCreated.get();
+    }
+
+    public long getInstanceCreationMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(instanceCreationNanos.get());
+    }
+
+    public long getFilesRead() {
+        return readCounters.getFilesRead();
+    }
+
+    public long getBytesRead() {
+        return readCounters.getBytesRead();
+    }
+
+    public long getBytesAllocated() {
+        return readCounters.getBytesAllocated();
+    }
+
+    public long getBytesAllocatedPerMegabyte() {
+        return readCounters.getBytesAllocatedPerMegabyte();
+    }
+
+    public long getContentChanges() {
+        return deltaCounters.getContentChanges();
+    }
+
+    public long getSkippedDeltas() {
+        return deltaCounters.getSkippedDeltas();
+    }
+
+    public long getPrunedSubtrees() {
+        return deltaCounters.getPrunedSubtrees();
+    }
+
+    public String getJson() {
+        StringBuilder sb = new StringBuilder("{\"totals\":");
+        totals.appendJson(sb);
+        BuildStats last = lastBuild;
+        if (last != null) {
+            sb.append(",\"lastBuild\":");
+            last.appendJson(sb);
+        }
+        sb.append(",\"instancesCreated\":").append(getInstancesCreated());
+        sb.append(",\"instanceCreationMillis\":").append(getInstanceCreationMillis());
+        sb.append(",\"filesRead\":").append(getFilesRead());
+        sb.append(",\"bytesRead\":").append(getBytesRead());
+        sb.append(",\"bytesAllocated\":").append(getBytesAllocated());
+        sb.append(",\"bytesAllocatedPerMegabyte\":").append(getBytesAllocatedPerMegabyte());
+        sb.append(",\"contentChanges\":").append(getContentChanges());
+        sb.append(",\"skippedDeltas\":").append(getSkippedDeltas());
+        sb.append(",\"prunedSubtrees\":").append(getPrunedSubtrees());
+        return sb.append("}\n").toString();
+    }
+
+    public void dump() {
+        try {
+            OutputStream out = new FileOutputStream(dumpFile);
+            try {
+                out.write(getJson().getBytes("UTF-8"));
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            JSLintLog.error(e);
+        }
+    }
+
+    public void reset() {
+        totals = new BuildStats("total");
+        lastBuild = null;
+        instancesCreated.set(0);
+        instanceCreationNanos.set(0);
+        readCounters.reset();
+        deltaCounters.reset();
+    }
+
+    /** Quote {@code s} as a JSON string. */
+    static String quote(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
@@ -0,0 +1,72 @@
+package com.googlecode.jslint4java.eclipse.builder;
+
+/**
+ * The JMX view of {@link LintMetrics}. Figures are totals over all builds since the plugin
+ * started, unless they say otherwise.
+ */
+public interface LintMetricsMBean {
+
+    long getBuilds();
+
+    long getFilesVisited();
+
+    long getFilesExcluded();
+
+    long getFilesSkipped();
+
+    long getFilesCached();
+
+    long getFilesRestored();
+
+    long getFilesLinted();
+
+    long getFilesTimedOut();
+
+    long getReadMillis();
+
+    long getLintMillis();
+
+    long getMarkerMillis();
+
+    double getLintP50Millis();
+
+    double getLintP95Millis();
+
+    double getLintMaxMillis();
+
+    /** The slowest files to lint, and how long they took. */
+    String[] getSlowestFiles();
+
+    long getInstancesCreated();
+
+    long getInstanceCreationMillis();
+
+    /** How many files have been read for linting. */
+    long getFilesRead();
+
+    long getBytesRead();
+
+    /** How many bytes were allocated while reading and decoding, or -1 if we can't tell. */
+    long getBytesAllocated();
+
+    /** {@link #getBytesAllocated()} per megabyte read, or -1 if we can't tell. */
+    long getBytesAllocatedPerMegabyte();
+
+    /** How many changed JavaScript files incremental builds queued for linting. */
+    long getContentChanges();
+
+    /** How many changed JavaScript files weren't linted, as only their markers etc. changed. */
+    long getSkippedDeltas();
+
+    /** How many subtrees incremental builds didn't visit at all. */
+    long getPrunedSubtrees();
+
+    /** Everything, including the most recent build, as JSON. */
+    String getJson();
+
+    /** Write {@link #getJson()} to the plugin's state location. */
+    void dump();
+
+    /** Start counting again from zero. */
+    void reset();
+}
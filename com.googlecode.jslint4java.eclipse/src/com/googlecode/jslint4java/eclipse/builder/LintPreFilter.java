@@ -0,0 +1,183 @@
+package com.googlecode.jslint4java.eclipse.builder;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Platform;
+
+import com.googlecode.jslint4java.eclipse.JSLintLog;
+import com.googlecode.jslint4java.eclipse.JSLintPlugin;
+
+/**
+ * Decide whether a file is worth handing to JSLint at all. Very large files and minified files
+ * (bundles, generated code) can take Rhino tens of seconds, and nobody is going to fix the
+ * warnings anyway. Unlike the {@link Excluder}, this looks at what's in the file rather than
+ * where it is.
+ * <p>
+ * Skipped files get no markers. Instead, each is noted in the log the first time it's skipped,
+ * and the most recent ones are available from {@link #getSkipped()}. Whether some content is
+ * minified is remembered by content digest, so it's only worked out once.
+ */
+public class LintPreFilter {
+
+    /** Files larger than this many kilobytes aren't linted. Zero means no limit. */
+    public static final String MAX_FILE_SIZE_PREFERENCE = "max_file_size_kb";
+
+    /** Should files that look minified be skipped? */
+    public static final String SKIP_MINIFIED_PREFERENCE = "skip_minified";
+
+    /** Content whose lines are this long on average is considered minified. */
+    private static final int MINIFIED_LINE_LENGTH = 300;
+
+    /** Below this size, we don't care if content is minified; it's quick to lint anyway. */
+    private static final int MINIFIED_MIN_SIZE = 4096;
+
+    private static final int MAX_REMEMBERED = 10000;
+
+    /** Content digest to whether or not it looks minified. */
+    private final Map<String, Boolean> minified = new LinkedHashMap<String, Boolean>(16, 0.75f,
+            true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > MAX_REMEMBERED;
+        }
+    };
+
+    /** Path to why it was skipped, most recent last. */
+    private final Map<String, String> skipped = new LinkedHashMap<String, String>() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_REMEMBERED;
+        }
+    };
+
+    /**
+     * Check {@code file} before reading it. Return why it should be skipped, or null if we can't
+     * tell yet.
+     */
+    public String check(IFile file) {
+        IPath location = file.getLocation();
+        File local = location == null ? null : location.toFile();
+        if (local != null && local.isFile()) {
+            return checkSize(local.length());
+        }
+        return null;
+    }
+
+    /**
+     * Check the contents of a file whose digest is {@code digest}. Return why it should be
+     * skipped, or null if it should be linted.
+     */
+    public String check(String digest, ByteBuffer contents) {
+        String reason = checkSize(contents.remaining());
+        if (reason == null && skipMinified() && isMinified(digest, contents)) {
+            reason = "looks minified";
+        }
+        return reason;
+    }
+
+    /**
+     * Check {@code source}, such as the unsaved contents of an editor. Return why it should be
+     * skipped, or null if it should be linted. Its size is taken to be that of its UTF-8 encoding.
+     */
+    public String check(String source) {
+        ByteBuffer contents;
+        try {
+            contents = ByteBuffer.wrap(source.getBytes("UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            // Can't happen; UTF-8 is always available.
+            throw new IllegalStateException(e);
+        }
+        return check(Digests.sha1(contents.duplicate()), contents);
+    }
+
+    /** Record that {@code file} was skipped because of {@code reason}. */
+    public void skipped(IFile file, String reason) {
+        String path = file.getFullPath().toString();
+        String previous;
+        synchronized (skipped) {
+            previous = skipped.remove(path);
+            skipped.put(path, reason);
+        }
+        if (!reason.equals(previous)) {
+            JSLintLog.info("Not linting %s: %s", path, reason);
+        }
+    }
+
+    /** Forget that {@code file} was skipped, as it's now been linted. */
+    public void linted(IFile file) {
+        synchronized (skipped) {
+            skipped.remove(file.getFullPath().toString());
+        }
+    }
+
+    /** Return the most recently skipped files, and why they were skipped. */
+    public Map<String, String> getSkipped() {
+        synchronized (skipped) {
+            return new LinkedHashMap<String, String>(skipped);
+        }
+    }
+
+    /**
+     * Describe the settings which decide what gets skipped, so that results can be tied to them
+     * (see {@link MarkerSnapshot}).
+     */
+    public String getSettings() {
+        return maxFileSizeKb() + "," + skipMinified();
+    }
+
+    private String checkSize(long size) {
+        long maxKb = maxFileSizeKb();
+        if (maxKb > 0 && size > maxKb * 1024) {
+            return String.format("larger than %d KB", maxKb);
+        }
+        return null;
+    }
+
+    private long maxFileSizeKb() {
+        return Platform.getPreferencesService().getLong(JSLintPlugin.PLUGIN_ID,
+                MAX_FILE_SIZE_PREFERENCE, 0, null);
+    }
+
+    private boolean skipMinified() {
+        return Platform.getPreferencesService().getBoolean(JSLintPlugin.PLUGIN_ID,
+                SKIP_MINIFIED_PREFERENCE, false, null);
+    }
+
+    private boolean isMinified(String digest, ByteBuffer contents) {
+        if (contents.remaining() < MINIFIED_MIN_SIZE) {
+            return false;
+        }
+        synchronized (minified) {
+            Boolean known = minified.get(digest);
+            if (known != null) {
+                return known;
+            }
+        }
+        boolean result = averageLineLength(contents) >= MINIFIED_LINE_LENGTH;
+        synchronized (minified) {
+            minified.put(digest, result);
+        }
+        return result;
+    }
+
+    /** Count newlines without decoding; every charset we care about encodes '\n' as 0x0A. */
+    private long averageLineLength(ByteBuffer contents) {
+        int lines = 1;
+        for (int i = contents.position(); i < contents.limit(); i++) {
+            if (contents.get(i) == '\n') {
+                lines++;
+            }
+        }
+        return contents.remaining() / lines;
+    }
+}
@@ -0,0 +1,166 @@
+package com.googlecode.jslint4java.eclipse.builder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.core.resources.IFile;
+
+import com.googlecode.jslint4java.eclipse.JSLintLog;
+
+/**
+ * Remember which files JSLint has run out of time on (see {@link LintWatchdog}). A file which
+ * times out {@link #STRIKES} times in a row with the same content is quarantined: it isn't
+ * linted again until its content, or the {@link LintWatchdog#LINT_TIMEOUT_PREFERENCE timeout},
+ * changes. The quarantine is saved in the plugin's state location when the plugin stops, and
+ * read back the first time it's used.
+ */
+public class LintQuarantine {
+
+    /** How many timeouts in a row it takes to be quarantined. */
+    static final int STRIKES = 2;
+
+    /** Bump this whenever the file format changes. */
+    private static final int VERSION = 2;
+
+    /**
+     * The content a file timed out on, the timeout it was given, and how many times in a row it
+     * has done so.
+     */
+    private static class Entry {
+        private final String digest;
+        private final long timeoutMillis;
+        private final int strikes;
+
+        Entry(String digest, long timeoutMillis, int strikes) {
+            this.digest = digest;
+            this.timeoutMillis = timeoutMillis;
+            this.strikes = strikes;
+        }
+
+        boolean isFor(String digest, long timeoutMillis) {
+            return this.digest.equals(digest) && this.timeoutMillis == timeoutMillis;
+        }
+    }
+
+    private final File file;
+
+    /** Path to its most recent timeouts. */
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+    private boolean loaded;
+
+    /** Create a quarantine which persists itself to {@code file}. */
+    public LintQuarantine(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Is {@code file}, whose content has the digest {@code digest}, in quarantine? If its
+     * content or the timeout has changed since it timed out, it's given another chance.
+     */
+    public synchronized boolean isQuarantined(IFile file, String digest) {
+        ensureLoaded();
+        String path = file.getFullPath().toString();
+        Entry entry = entries.get(path);
+        if (entry == null) {
+            return false;
+        }
+        if (!entry.isFor(digest, LintWatchdog.timeoutMillis())) {
+            entries.remove(path);
+            return false;
+        }
+        return entry.strikes >= STRIKES;
+    }
+
+    /**
+     * Record that JSLint ran out of time on {@code file}, whose content has the digest
+     * {@code digest}. Returns true if it's now in quarantine.
+     */
+    public boolean timedOut(IFile file, String digest) {
+        String path = file.getFullPath().toString();
+        long timeoutMillis = LintWatchdog.timeoutMillis();
+        int strikes;
+        synchronized (this) {
+            ensureLoaded();
+            Entry entry = entries.get(path);
+            strikes = entry != null && entry.isFor(digest, timeoutMillis) ? entry.strikes + 1 : 1;
+            entries.put(path, new Entry(digest, timeoutMillis, strikes));
+        }
+        if (strikes == STRIKES) {
+            JSLintLog.info("Not linting %s again until it changes: it timed out %d times", path,
+                    strikes);
+        }
+        return strikes >= STRIKES;
+    }
+
+    /** Forget any timeouts for {@code file}, as it's now been linted successfully. */
+    public synchronized void linted(IFile file) {
+        ensureLoaded();
+        entries.remove(file.getFullPath().toString());
+    }
+
+    /** Write the quarantine out to disk. Does nothing if it was never used. */
+    public synchronized void save() {
+        if (!loaded) {
+            return;
+        }
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(file)));
+            try {
+                out.writeInt(VERSION);
+                out.writeInt(entries.size());
+                for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeUTF(entry.getValue().digest);
+                    out.writeLong(entry.getValue().timeoutMillis);
+                    out.writeInt(entry.getValue().strikes);
+                }
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            JSLintLog.error("Unable to save quarantined files to " + file, e);
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(file)));
+            try {
+                if (in.readInt() != VERSION) {
+                    return;
+                }
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    String path = in.readUTF();
+                    String digest = in.readUTF();
+                    long timeoutMillis = in.readLong();
+                    entries.put(path, new Entry(digest, timeoutMillis, in.readInt()));
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            // Not fatal; the files will just have to time out again.
+            JSLintLog.error("Unable to read quarantined files from " + file, e);
+            entries.clear();
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package com.googlecode.jslint4java.eclipse.builder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.core.runtime.Platform;
+
+import com.googlecode.jslint4java.Issue;
+import com.googlecode.jslint4java.eclipse.JSLintLog;
+import com.googlecode.jslint4java.eclipse.JSLintPlugin;
+
+/**
+ * Remember the issues JSLint found for a given piece of content, so that we don't have to lint
+ * it again. Entries are keyed by a digest of the file contents, the charset they were decoded
+ * with and the fingerprint of the options JSLint was configured with, so the same content at a
+ * different path (or at the same path after a checkout) is a hit.
+ * <p>
+ * The fingerprint leaves out the predefined names (see
+ * {@link JSLintProvider#getBaseFingerprint}). Instead, each entry records the predefined names it
+ * was linted with, and the global names the content uses or declares. It still holds when the
+ * predefined names change, as long as none of the names added or removed are among them.
+ * <p>
+ * The least recently used entries are evicted once there are more than the
+ * <i>result_cache_size</i> preference allows. The cache is saved in the plugin's state location
+ * when the plugin stops, and read back the first time it's used.
+ */
+public class LintResultCache {
+
+    /** The maximum number of entries to keep. */
+    public static final String RESULT_CACHE_SIZE_PREFERENCE = "result_cache_size";
+
+    /** The default for {@link #RESULT_CACHE_SIZE_PREFERENCE}. */
+    public static final int DEFAULT_SIZE = 20000;
+
+    /** Bump this whenever the file format changes. */
+    private static final int VERSION = 3;
+
+    /** A single issue, minus the file it was found in. */
+    private static class CachedIssue {
+        private final int line;
+        private final int character;
+        private final String reason;
+        private final String evidence;
+
+        CachedIssue(int line, int character, String reason, String evidence) {
+            this.line = line;
+            this.character = character;
+            this.reason = reason;
+            this.evidence = evidence;
+        }
+
+        Issue toIssue(String systemId) {
+            return new Issue.IssueBuilder(systemId, line, character, reason).evidence(evidence)
+                    .build();
+        }
+    }
+
+    /** What JSLint made of a piece of content. */
+    private static class CachedResult {
+        private final List<CachedIssue> issues;
+        private final Set<String> globals;
+        /** The predefined names linted with. Replaced when found to hold for others. */
+        private Set<String> predef;
+
+        CachedResult(List<CachedIssue> issues, Set<String> globals, Set<String> predef) {
+            this.issues = issues;
+            this.globals = globals;
+            this.predef = predef;
+        }
+
+        /** Would JSLint say the same with {@code otherPredef} instead? */
+        boolean holdsFor(Set<String> otherPredef) {
+            if (predef.equals(otherPredef)) {
+                return true;
+            }
+            return !usesAny(predef, otherPredef) && !usesAny(otherPredef, predef);
+        }
+
+        /** Do we use any name which is in {@code a} but not in {@code b}? */
+        private boolean usesAny(Set<String> a, Set<String> b) {
+            for (String name : a) {
+                if (!b.contains(name) && globals.contains(name)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /** The issues and global names found in a piece of content. */
+    public static class Result {
+        private final List<Issue> issues;
+        private final Set<String> globals;
+
+        Result(List<Issue> issues, Set<String> globals) {
+            this.issues = issues;
+            this.globals = globals;
+        }
+
+        public List<Issue> getIssues() {
+            return issues;
+        }
+
+        /** The global names the content uses or declares. */
+        public Set<String> getGlobals() {
+            return globals;
+        }
+    }
+
+    private final File file;
+
+    /** In access order, so that the eldest entry is the least recently used. */
+    private final Map<String, CachedResult> entries = new LinkedHashMap<String,
+            CachedResult>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedResult> eldest) {
+            return size() > maxEntries();
+        }
+    };
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private boolean loaded;
+
+    /** Create a cache which persists itself to {@code file}. */
+    public LintResultCache(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Make a key for content with the digest {@code contentDigest}, decoded with {@code charset}
+     * and linted with options matching {@code baseFingerprint}. The same bytes can be different
+     * source in a different charset.
+     */
+    public static String key(String contentDigest, String charset, String baseFingerprint) {
+        return contentDigest + ":" + charset + ":" + baseFingerprint;
+    }
+
+    /**
+     * Return what was previously stored under {@code key}, with the issues attributed to
+     * {@code systemId}, or null if there's nothing which holds for the names in {@code predef}.
+     */
+    public Result get(String key, Set<String> predef, String systemId) {
+        CachedResult entry;
+        synchronized (this) {
+            ensureLoaded();
+            entry = entries.get(key);
+            if (entry != null && entry.holdsFor(predef)) {
+                // Save working it out again next time.
+                entry.predef = predef;
+            } else {
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        List<Issue> issues = new ArrayList<Issue>(entry.issues.size());
+        for (CachedIssue c : entry.issues) {
+            issues.add(c.toIssue(systemId));
+        }
+        return new Result(issues, entry.globals);
+    }
+
+    /**
+     * Remember {@code issues} under {@code key}, found with the names in {@code predef}
+     * predefined, in content which uses or declares the global names {@code globals}.
+     */
+    public void put(String key, Set<String> predef, List<Issue> issues, Set<String> globals) {
+        List<CachedIssue> cached = new ArrayList<CachedIssue>(issues.size());
+        for (Issue issue : issues) {
+            cached.add(new CachedIssue(issue.getLine(), issue.getCharacter(), issue.getReason(),
+                    issue.getEvidence()));
+        }
+        CachedResult entry = new CachedResult(Collections.unmodifiableList(cached), globals,
+                predef);
+        synchronized (this) {
+            ensureLoaded();
+            entries.put(key, entry);
+        }
+    }
+
+    /** How many lookups found an entry. */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /** How many lookups found nothing. */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /** How many entries are currently held. */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /** Throw away every entry, including the saved copy. */
+    public synchronized void clear() {
+        entries.clear();
+        loaded = true;
+        file.delete();
+    }
+
+    /** Write the cache out to disk. Does nothing if it was never used. */
+    public synchronized void save() {
+        if (!loaded) {
+            return;
+        }
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            // Iteration order is least recently used first, which is preserved on reload.
+            for (Map.Entry<String, CachedResult> entry : entries.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue().issues.size());
+                for (CachedIssue issue : entry.getValue().issues) {
+                    out.writeInt(issue.line);
+                    out.writeInt(issue.character);
+                    writeString(out, issue.reason);
+                    writeString(out, issue.evidence);
+                }
+                writeNames(out, entry.getValue().globals);
+                writeNames(out, entry.getValue().predef);
+            }
+        } catch (IOException e) {
+            JSLintLog.error("Unable to save lint results to " + file, e);
+        } finally {
+            close(out);
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (!file.exists()) {
+            return;
+        }
+        DataInputStream in = null;
+        // Most entries were linted with one of a few sets of predefined names; share them.
+        Map<Set<String>, Set<String>> predefs = new HashMap<Set<String>, Set<String>>();
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != VERSION) {
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                int issueCount = in.readInt();
+                List<CachedIssue> cached = new ArrayList<CachedIssue>(issueCount);
+                for (int j = 0; j < issueCount; j++) {
+                    int line = in.readInt();
+                    int character = in.readInt();
+                    cached.add(new CachedIssue(line, character, readString(in), readString(in)));
+                }
+                Set<String> globals = readNames(in);
+                Set<String> predef = readNames(in);
+                if (predefs.containsKey(predef)) {
+                    predef = predefs.get(predef);
+                } else {
+                    predefs.put(predef, predef);
+                }
+                entries.put(key, new CachedResult(Collections.unmodifiableList(cached), globals,
+                        predef));
+            }
+        } catch (IOException e) {
+            // Not fatal; we'll just have to lint everything again.
+            JSLintLog.error("Unable to read lint results from " + file, e);
+            entries.clear();
+        } finally {
+            close(in);
+        }
+    }
+
+    private int maxEntries() {
+        return Platform.getPreferencesService().getInt(JSLintPlugin.PLUGIN_ID,
+                RESULT_CACHE_SIZE_PREFERENCE, DEFAULT_SIZE, null);
+    }
+
+    /** Like {@link DataOutputStream#writeUTF(String)}, but allows null and long strings. */
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeNames(DataOutputStream out, Set<String> names) throws IOException {
+        out.writeInt(names.size());
+        for (String name : names) {
+            out.writeUTF(name);
+        }
+    }
+
+    private static Set<String> readNames(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        Set<String> names = new TreeSet<String>();
+        for (int i = 0; i < count; i++) {
+            names.add(in.readUTF());
+        }
+        return Collections.unmodifiableSet(names);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    private static void close(Closeable close) {
+        if (close == null) {
+            return;
+        }
+        try {
+            close.close();
+        } catch (IOException e) {
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.googlecode.jslint4java.eclipse.builder;
+
+import java.io.File;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences.IPreferenceChangeListener;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences.PreferenceChangeEvent;
+import org.eclipse.core.runtime.preferences.InstanceScope;
+
+import com.googlecode.jslint4java.JSLintResult;
+import com.googlecode.jslint4java.eclipse.JSLintPlugin;
+
+/**
+ * Everything that's needed to lint, shared by every builder and editor in the workspace: the
+ * {@link JSLintProvider}, the {@link Excluder}, the {@link ChunkedLint} for very large files, and
+ * a limit on how many files are linted at once.
+ * <p>
+ * There is a single instance, owned by {@link JSLintPlugin}, and started and stopped along with
+ * it. So however many projects have the nature, there is one pool of JSLint instances and one set
+ * of preference listeners, and they're all released on shutdown. When options or exclusions
+ * change, the affected projects or files are re-linted in the background by a {@link RebuildJob}.
+ */
+public class LintService {
+
+    /** A semaphore whose number of permits can be changed while it's in use. */
+    private static class Limit extends Semaphore {
+        private static final long serialVersionUID = 1L;
+
+        private int size;
+
+        Limit(int size) {
+            super(size);
+            this.size = size;
+        }
+
+        synchronized void resize(int newSize) {
+            if (newSize > size) {
+                release(newSize - size);
+            } else if (newSize < size) {
+                // Takes effect as running lints finish.
+                reducePermits(size - newSize);
+            }
+            size = newSize;
+        }
+    }
+
+    /** How long to wait for a permit before checking for cancellation. */
+    private static final long POLL_MILLIS = 100;
+
+    private final JSLintScript script;
+
+    private final JSLintProvider lintProvider;
+
+    private final Excluder excluder = new Excluder();
+
+    private final Limit limit = new Limit(lintThreads());
+
+    private final ChunkedLint chunkedLint = new ChunkedLint();
+
+    private volatile int chunkedLintLines = ChunkedLint.chunkedLintLines();
+
+    /** Whether {@link #script} is counting instructions, which it does to start with. */
+    private boolean countingInstructions = true;
+
+    private final RebuildJob rebuildJob;
+
+    /**
+     * Re-lint a project when its own options change, or every project when the workspace's do.
+     * Those which don't inherit the changed options are skipped by the job.
+     */
+    private final JSLintProvider.OptionsListener optionsListener =
+            new JSLintProvider.OptionsListener() {
+                public void optionsChanged(IProject project) {
+                    if (project != null) {
+                        rebuildJob.rebuild(project);
+                    } else {
+                        rebuildJob.rebuildAll();
+                    }
+                }
+            };
+
+    /** Re-lint the files which have been excluded or included. */
+    private final Excluder.ExclusionListener exclusionListener = new Excluder.ExclusionListener() {
+        public void exclusionsChanged(ExclusionMatcher before, ExclusionMatcher after) {
+            rebuildJob.exclusionsChanged(before, after);
+        }
+    };
+
+    private final IPreferenceChangeListener listener = new IPreferenceChangeListener() {
+        public void preferenceChange(PreferenceChangeEvent ev) {
+            if (ev.getKey().equals(JSLintBuilder.LINT_THREADS_PREFERENCE)) {
+                limit.resize(lintThreads());
+            } else if (ev.getKey().equals(ChunkedLint.CHUNKED_LINT_LINES_PREFERENCE)) {
+                chunkedLintLines = ChunkedLint.chunkedLintLines();
+            } else if (ev.getKey().equals(LintWatchdog.LINT_TIMEOUT_PREFERENCE)) {
+                countInstructions();
+            }
+        }
+    };
+
+    /**
+     * @param compiledDir where to keep the compiled copy of <i>jslint.js</i>.
+     * @param metrics where to record how long it takes to create instances of JSLint.
+     */
+    public LintService(File compiledDir, LintMetrics metrics) {
+        script = new JSLintScript(compiledDir);
+        LintEngines engines = new LintEngines(new JSLintEngineFactory(script));
+        lintProvider = new JSLintProvider(engines, metrics);
+        rebuildJob = new RebuildJob(lintProvider);
+    }
+
+    /** Start listening for preference changes, and prepare JSLint if the user wants us to. */
+    public void start() {
+        lintProvider.init();
+        lintProvider.addOptionsListener(optionsListener);
+        excluder.init();
+        excluder.addExclusionListener(exclusionListener);
+        InstanceScope.INSTANCE.getNode(JSLintPlugin.PLUGIN_ID).addPreferenceChangeListener(
+                listener);
+        countInstructions();
+        if (Platform.getPreferencesService().getBoolean(JSLintPlugin.PLUGIN_ID,
+                JSLintProvider.PREWARM_PREFERENCE, false, null)) {
+            lintProvider.warmUp();
+        }
+    }
+
+    /**
+     * Compiled JSLint runs faster if it doesn't count instructions, but then it can't be timed
+     * out or cancelled. So it only counts them if there's a time limit. Idle instances made with
+     * the other setting are replaced.
+     */
+    private synchronized void countInstructions() {
+        boolean count = LintWatchdog.timeoutMillis() > 0;
+        if (count != countingInstructions) {
+            countingInstructions = count;
+            script.setCountInstructions(count);
+            lintProvider.discardIdle();
+        }
+    }
+
+    /** Stop listening for preference changes, and drop any pooled lint engines. */
+    public void stop() {
+        IEclipsePreferences node = InstanceScope.INSTANCE.getNode(JSLintPlugin.PLUGIN_ID);
+        node.removePreferenceChangeListener(listener);
+        excluder.removeExclusionListener(exclusionListener);
+        excluder.dispose();
+        lintProvider.removeOptionsListener(optionsListener);
+        lintProvider.dispose();
+        rebuildJob.cancel();
+    }
+
+    /** Return the provider of lint engines. */
+    public JSLintProvider getLintProvider() {
+        return lintProvider;
+    }
+
+    /** Return the paths excluded from linting. */
+    public Excluder getExcluder() {
+        return excluder;
+    }
+
+    /**
+     * Wait until fewer than <i>lint_threads</i> files are being linted across the workspace.
+     * Every successful call must be followed by a call to {@link #release()}.
+     *
+     * @throws OperationCanceledException if {@code monitor} is cancelled while waiting.
+     */
+    public void acquire(IProgressMonitor monitor) {
+        try {
+            while (!limit.tryAcquire(POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (monitor.isCanceled()) {
+                    throw new OperationCanceledException();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OperationCanceledException();
+        }
+    }
+
+    /**
+     * Lint {@code source} from {@code project} with {@code lint}, which must have been checked
+     * out for it. Files of at least <i>chunked_lint_lines</i> lines are linted a chunk at a time
+     * where that gives the same results, so that an edit only costs a lint of its chunk.
+     *
+     * @throws LintWatchdog.TimeoutException if JSLint takes too long.
+     * @throws OperationCanceledException if {@code monitor} is cancelled.
+     */
+    public JSLintResult lint(LintEngine lint, IProject project, String systemId, String source,
+            IProgressMonitor monitor) {
+        String fingerprint = lintProvider.getOptionFingerprint(lint);
+        // Chunks are cached by fingerprint, so it had better match the options we pass. Only
+        // JSLint is known to treat a chunk after its prelude as it would the whole file.
+        if (chunkedLintLines > 0 && lint instanceof JSLintEngineFactory.JSLintEngine
+                && fingerprint != null
+                && fingerprint.equals(lintProvider.getOptionFingerprint(project))) {
+            JSLintResult result = chunkedLint.lint(lint, fingerprint, lintProvider
+                    .getOptions(project), systemId, source, chunkedLintLines, monitor);
+            if (result != null) {
+                return result;
+            }
+        }
+        return LintWatchdog.lint(lint, systemId, source, monitor);
+    }
+
+    /** Allow somebody else to lint. */
+    public void release() {
+        limit.release();
+    }
+
+    private static int lintThreads() {
+        return Math.max(1, Platform.getPreferencesService().getInt(JSLintPlugin.PLUGIN_ID,
+                JSLintBuilder.LINT_THREADS_PREFERENCE, 1, null));
+    }
+}
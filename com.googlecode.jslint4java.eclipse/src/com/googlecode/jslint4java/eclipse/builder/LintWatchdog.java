@@ -0,0 +1,176 @@
+package com.googlecode.jslint4java.eclipse.builder;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Platform;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+
+import com.googlecode.jslint4java.JSLintBuilder;
+import com.googlecode.jslint4java.JSLintResult;
+import com.googlecode.jslint4java.eclipse.JSLintLog;
+import com.googlecode.jslint4java.eclipse.JSLintPlugin;
+
+/**
+ * Stop a single file from hanging a build. Instances of JSLint created by a builder which has
+ * been through {@link #install(JSLintBuilder)}, or with a context factory from
+ * {@link #newContextFactory(int, boolean)} that counts instructions, ask Rhino to call back every
+ * few thousand instructions. If the current thread is inside {@link #lint}, the callback aborts
+ * the lint once it has used up its time budget, or as soon as its progress monitor is cancelled.
+ */
+public class LintWatchdog {
+
+    /** How long JSLint may spend on a single file, in milliseconds. Zero means no limit. */
+    public static final String LINT_TIMEOUT_PREFERENCE = "lint_timeout_ms";
+
+    /** Thrown by {@link LintWatchdog#lint} when a file runs out of time. */
+    public static class TimeoutException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        TimeoutException(String message) {
+            super(message);
+        }
+    }
+
+    /** The limits on the lint currently running on some thread. */
+    private static class Budget {
+        private final long timeoutMillis;
+        private final long deadline;
+        private final IProgressMonitor monitor;
+
+        Budget(long timeoutMillis, IProgressMonitor monitor) {
+            this.timeoutMillis = timeoutMillis;
+            this.deadline = timeoutMillis > 0 ? System.nanoTime()
+                    + TimeUnit.MILLISECONDS.toNanos(timeoutMillis) : 0;
+            this.monitor = monitor;
+        }
+
+        boolean isExpired() {
+            return deadline != 0 && System.nanoTime() - deadline > 0;
+        }
+    }
+
+    /**
+     * Checks the current thread's {@link Budget}, if it has one. Every context has the same
+     * optimization level and language version, so {@link #hasFeature} is answered from a table
+     * worked out once, rather than by looking at the context each time Rhino asks.
+     */
+    private static class WatchdogContextFactory extends ContextFactory {
+        private final int optimizationLevel;
+        private final boolean countInstructions;
+        private final int languageVersion;
+        private final boolean[] features = new boolean[Context.FEATURE_ENHANCED_JAVA_ACCESS + 1];
+
+        WatchdogContextFactory(int optimizationLevel, boolean countInstructions) {
+            this.optimizationLevel = optimizationLevel;
+            this.countInstructions = countInstructions;
+            Context cx = super.makeContext();
+            languageVersion = cx.getLanguageVersion();
+            for (int i = 1; i < features.length; i++) {
+                features[i] = super.hasFeature(cx, i);
+            }
+        }
+
+        @Override
+        protected Context makeContext() {
+            Context cx = super.makeContext();
+            cx.setLanguageVersion(languageVersion);
+            cx.setOptimizationLevel(optimizationLevel);
+            if (countInstructions) {
+                // This also makes compiled scripts count instructions.
+                cx.setInstructionObserverThreshold(CHECK_INTERVAL);
+            }
+            return cx;
+        }
+
+        @Override
+        protected boolean hasFeature(Context cx, int featureIndex) {
+            if (featureIndex > 0 && featureIndex < features.length
+                    && cx.getLanguageVersion() == languageVersion) {
+                return features[featureIndex];
+            }
+            return super.hasFeature(cx, featureIndex);
+        }
+
+        @Override
+        protected void observeInstructionCount(Context cx, int instructionCount) {
+            Budget budget = current.get();
+            if (budget == null) {
+                return;
+            }
+            if (budget.monitor.isCanceled()) {
+                throw new OperationCanceledException();
+            }
+            if (budget.isExpired()) {
+                throw new TimeoutException(String.format("JSLint gave up after %d ms",
+                        budget.timeoutMillis));
+            }
+        }
+    }
+
+    /** How many Rhino instructions to run between checks. */
+    private static final int CHECK_INTERVAL = 10000;
+
+    private static final ThreadLocal<Budget> current = new ThreadLocal<Budget>();
+
+    private LintWatchdog() {
+    }
+
+    /**
+     * Make the instances of JSLint created by {@code builder} obey {@link #lint}. jslint4java
+     * offers no way to supply our own context factory, so it's swapped in by reflection. Returns
+     * false (having logged why) if that isn't possible, in which case lints can't be stopped.
+     */
+    static boolean install(JSLintBuilder builder) {
+        try {
+            Field field = JSLintBuilder.class.getDeclaredField("contextFactory");
+            field.setAccessible(true);
+            field.set(builder, new WatchdogContextFactory(0, true));
+            return true;
+        } catch (NoSuchFieldException e) {
+            JSLintLog.error("Unable to install lint timeout", e);
+        } catch (IllegalAccessException e) {
+            JSLintLog.error("Unable to install lint timeout", e);
+        } catch (SecurityException e) {
+            JSLintLog.error("Unable to install lint timeout", e);
+        }
+        return false;
+    }
+
+    /**
+     * Return a context factory whose contexts run at {@code optimizationLevel} (-1 to interpret).
+     * If {@code countInstructions}, they obey {@link #lint}; if not, scripts compiled with them
+     * run a little faster, but can be neither timed out nor cancelled.
+     */
+    static ContextFactory newContextFactory(int optimizationLevel, boolean countInstructions) {
+        return new WatchdogContextFactory(optimizationLevel, countInstructions);
+    }
+
+    /**
+     * Run {@code lint} over {@code source}, within the budget set by
+     * {@link #LINT_TIMEOUT_PREFERENCE}. Only engines running in Rhino, such as JSLint, are held to
+     * it. If this throws, {@code lint} may have been left in an inconsistent state, and should be
+     * thrown away.
+     *
+     * @throws TimeoutException if the budget runs out.
+     * @throws OperationCanceledException if {@code monitor} is cancelled.
+     */
+    public static JSLintResult lint(LintEngine lint, String systemId, String source,
+            IProgressMonitor monitor) {
+        current.set(new Budget(timeoutMillis(), monitor));
+        try {
+            return lint.lint(systemId, source);
+        } finally {
+            current.remove();
+        }
+    }
+
+    /** The current value of {@link #LINT_TIMEOUT_PREFERENCE}. */
+    public static long timeoutMillis() {
+        return Platform.getPreferencesService().getLong(JSLintPlugin.PLUGIN_ID,
+                LINT_TIMEOUT_PREFERENCE, 0, null);
+    }
+}
@@ -0,0 +1,163 @@
+package com.googlecode.jslint4java.eclipse.builder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceRuleFactory;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceRunnable;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.core.runtime.jobs.MultiRule;
+
+import com.googlecode.jslint4java.Issue;
+import com.googlecode.jslint4java.eclipse.JSLintLog;
+import com.googlecode.jslint4java.eclipse.builder.LintExecutor.FileResult;
+
+/**
+ * Bring the JSLint markers on a file in line with a freshly found set of issues. Rather than
+ * deleting every marker and starting again, markers which still describe an issue (same line,
+ * character and reason) are left alone. Only stale markers are deleted, and new markers are
+ * created with all their attributes set at once. This keeps the number of resource changes (and
+ * hence the work done by the Problems view, editors, etc.) to a minimum.
+ * <p>
+ * {@link #reconcile(IWorkspace, List, IProgressMonitor)} goes further, and updates a whole chunk of
+ * files in a single workspace operation, so that listeners are notified once per chunk rather
+ * than once per file.
+ */
+class MarkerReconciler {
+
+    /** Where on the line an issue was found. Not one of the standard marker attributes. */
+    static final String CHARACTER = "character";
+
+    private static final String SOURCE_ID = "jslint4java";
+
+    private static final String[] ATTRIBUTE_NAMES = { IMarker.MESSAGE, IMarker.SEVERITY,
+            IMarker.LINE_NUMBER, CHARACTER, IMarker.SOURCE_ID };
+
+    /** Notices are about the file as a whole, so have no position. */
+    private static final String[] NOTICE_ATTRIBUTE_NAMES = { IMarker.MESSAGE, IMarker.SEVERITY,
+            IMarker.SOURCE_ID };
+
+    private final String markerType;
+
+    MarkerReconciler(String markerType) {
+        this.markerType = markerType;
+    }
+
+    /** The values of {@link #ATTRIBUTE_NAMES} for a marker representing {@code issue}. */
+    static Object[] attributesFor(Issue issue) {
+        return new Object[] { issue.getReason(), IMarker.SEVERITY_WARNING, issue.getLine(),
+                issue.getCharacter(), SOURCE_ID };
+    }
+
+    /**
+     * Update the markers on every file in {@code results} inside a single workspace operation,
+     * holding only the rules needed to modify their markers. Failures are logged, and don't
+     * prevent the remaining files being updated.
+     */
+    public void reconcile(IWorkspace workspace, final List<FileResult> results,
+            IProgressMonitor monitor) throws CoreException {
+        workspace.run(new IWorkspaceRunnable() {
+            public void run(IProgressMonitor monitor) throws CoreException {
+                for (FileResult result : results) {
+                    try {
+                        reconcile(result.getFile(), result.getIssues(), result.getNotice());
+                    } catch (CoreException e) {
+                        JSLintLog.error(e);
+                    }
+                }
+            }
+        }, markerRule(workspace, results), IWorkspace.AVOID_UPDATE, monitor);
+    }
+
+    /** The rule needed to modify the markers of all files in {@code results}. */
+    private ISchedulingRule markerRule(IWorkspace workspace, List<FileResult> results) {
+        IResourceRuleFactory ruleFactory = workspace.getRuleFactory();
+        ISchedulingRule rule = null;
+        for (FileResult result : results) {
+            rule = MultiRule.combine(rule, ruleFactory.markerRule(result.getFile()));
+        }
+        return rule;
+    }
+
+    /** Update the markers on {@code file} so there is exactly one for each of {@code issues}. */
+    public void reconcile(IFile file, List<Issue> issues) throws CoreException {
+        reconcile(file, issues, null);
+    }
+
+    /**
+     * Update the markers on {@code file} so there is exactly one for each of {@code issues}, plus
+     * an informational one for {@code notice}, if it isn't null.
+     */
+    public void reconcile(IFile file, List<Issue> issues, String notice) throws CoreException {
+        // Index the existing markers. There may be more than one with the same key.
+        Map<String, LinkedList<IMarker>> existing = new HashMap<String, LinkedList<IMarker>>();
+        for (IMarker m : file.findMarkers(markerType, false, IResource.DEPTH_ZERO)) {
+            String key = key(m.getAttribute(IMarker.LINE_NUMBER, -1), m.getAttribute(CHARACTER,
+                    -1), m.getAttribute(IMarker.MESSAGE, ""));
+            LinkedList<IMarker> markers = existing.get(key);
+            if (markers == null) {
+                markers = new LinkedList<IMarker>();
+                existing.put(key, markers);
+            }
+            markers.add(m);
+        }
+
+        // Match each issue up to an existing marker if we can.
+        List<Issue> missing = new ArrayList<Issue>();
+        for (Issue issue : issues) {
+            LinkedList<IMarker> markers = existing.get(key(issue.getLine(), issue.getCharacter(),
+                    issue.getReason()));
+            if (markers == null || markers.isEmpty()) {
+                missing.add(issue);
+            } else {
+                markers.removeFirst();
+            }
+        }
+
+        boolean noticeMissing = false;
+        if (notice != null) {
+            LinkedList<IMarker> markers = existing.get(key(-1, -1, notice));
+            if (markers == null || markers.isEmpty()) {
+                noticeMissing = true;
+            } else {
+                markers.removeFirst();
+            }
+        }
+
+        // Whatever's left over no longer applies.
+        List<IMarker> stale = new ArrayList<IMarker>();
+        for (LinkedList<IMarker> markers : existing.values()) {
+            stale.addAll(markers);
+        }
+        if (!stale.isEmpty()) {
+            file.getWorkspace().deleteMarkers(stale.toArray(new IMarker[stale.size()]));
+        }
+
+        for (Issue issue : missing) {
+            IMarker m = file.createMarker(markerType);
+            if (m.exists()) {
+                m.setAttributes(ATTRIBUTE_NAMES, attributesFor(issue));
+            }
+        }
+        if (noticeMissing) {
+            IMarker m = file.createMarker(markerType);
+            if (m.exists()) {
+                m.setAttributes(NOTICE_ATTRIBUTE_NAMES, new Object[] { notice,
+                        IMarker.SEVERITY_INFO, SOURCE_ID });
+            }
+        }
+    }
+
+    private String key(int line, int character, String reason) {
+        return line + ":" + character + ":" + reason;
+    }
+}
@@ -0,0 +1,300 @@
+package com.googlecode.jslint4java.eclipse.builder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+
+import com.googlecode.jslint4java.Issue;
+import com.googlecode.jslint4java.eclipse.JSLintLog;
+
+/**
+ * Remember, for each file, the issues it was last found to have, along with its time stamps, a
+ * digest of its contents, and the options and charset it was linted with. A full build can then
+ * put back the markers of a file which hasn't changed since without reading it, which is what
+ * makes up most of a full build once the {@link LintResultCache} has the answers. This is what
+ * lets a large workspace come back quickly after a restart which lost the builder's state, or
+ * after a clean.
+ * <p>
+ * A file is taken to be unchanged if both its local time stamp and its modification stamp are
+ * as recorded; both come from the workspace tree, so checking them costs no I/O. Failing that,
+ * a file whose contents still have the recorded digest (e.g. after a touch, or a checkout which
+ * put back the same contents) gets its issues back too, and its stamps updated.
+ * <p>
+ * Issues are kept without their evidence, which markers don't show. The snapshot is saved in the
+ * plugin's state location when the plugin stops, and read back the first time it's used.
+ */
+public class MarkerSnapshot {
+
+    /** Bump this whenever the file format changes. */
+    private static final int VERSION = 2;
+
+    /** What a file looked like when it was last linted, and what was found. */
+    private static class Entry {
+        private final long localTimeStamp;
+        private final long modificationStamp;
+        private final String digest;
+        private final String settings;
+        /** The line and character of each issue, in turn. */
+        private final int[] positions;
+        private final String[] reasons;
+
+        Entry(long localTimeStamp, long modificationStamp, String digest, String settings,
+                int[] positions, String[] reasons) {
+            this.localTimeStamp = localTimeStamp;
+            this.modificationStamp = modificationStamp;
+            this.digest = digest;
+            this.settings = settings;
+            this.positions = positions;
+            this.reasons = reasons;
+        }
+
+        boolean isStampedAs(IFile file) {
+            return localTimeStamp == file.getLocalTimeStamp()
+                    && modificationStamp == file.getModificationStamp();
+        }
+
+        Entry restamp(long localTimeStamp, long modificationStamp) {
+            return new Entry(localTimeStamp, modificationStamp, digest, settings, positions,
+                    reasons);
+        }
+
+        List<Issue> toIssues(String systemId) {
+            List<Issue> issues = new ArrayList<Issue>(reasons.length);
+            for (int i = 0; i < reasons.length; i++) {
+                issues.add(new Issue.IssueBuilder(systemId, positions[2 * i],
+                        positions[2 * i + 1], reasons[i]).build());
+            }
+            return issues;
+        }
+    }
+
+    private final File file;
+
+    /** Full path of each file to what was found in it. */
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+    private boolean loaded;
+
+    /** Create a snapshot which persists itself to {@code file}. */
+    public MarkerSnapshot(File file) {
+        this.file = file;
+    }
+
+    /**
+     * The time stamps which {@code file} has now. Take these before reading it, so that if it
+     * changes in between, the stamps recorded won't match next time.
+     */
+    public static long[] stampsOf(IFile file) {
+        return new long[] { file.getLocalTimeStamp(), file.getModificationStamp() };
+    }
+
+    /**
+     * Return the issues last found in {@code file}, if it hasn't been touched since and was
+     * linted with {@code settings}. Otherwise, return null.
+     */
+    public List<Issue> get(IFile file, String settings) {
+        String path = file.getFullPath().toString();
+        Entry entry;
+        synchronized (this) {
+            ensureLoaded();
+            entry = entries.get(path);
+        }
+        if (entry == null || !entry.isStampedAs(file) || !entry.settings.equals(settings)) {
+            return null;
+        }
+        return entry.toIssues(path);
+    }
+
+    /**
+     * Return the issues last found in {@code file}, if its contents still have the digest
+     * {@code digest} and it was linted with {@code settings}, and record that it now has the time
+     * stamps {@code stamps}. Otherwise, return null.
+     */
+    public List<Issue> get(IFile file, long[] stamps, String digest, String settings) {
+        String path = file.getFullPath().toString();
+        Entry entry;
+        synchronized (this) {
+            ensureLoaded();
+            entry = entries.get(path);
+            if (entry == null || !entry.digest.equals(digest)
+                    || !entry.settings.equals(settings)) {
+                return null;
+            }
+            entries.put(path, entry.restamp(stamps[0], stamps[1]));
+        }
+        return entry.toIssues(path);
+    }
+
+    /**
+     * Remember that {@code issues} were found in {@code file}, with the time stamps
+     * {@code stamps} and contents with the digest {@code digest}, when linted with
+     * {@code settings}.
+     */
+    public void put(IFile file, long[] stamps, String digest, String settings,
+            List<Issue> issues) {
+        int[] positions = new int[2 * issues.size()];
+        String[] reasons = new String[issues.size()];
+        for (int i = 0; i < reasons.length; i++) {
+            Issue issue = issues.get(i);
+            positions[2 * i] = issue.getLine();
+            positions[2 * i + 1] = issue.getCharacter();
+            reasons[i] = issue.getReason() == null ? "" : issue.getReason();
+        }
+        Entry entry = new Entry(stamps[0], stamps[1], digest, settings, positions, reasons);
+        synchronized (this) {
+            ensureLoaded();
+            entries.put(file.getFullPath().toString(), entry);
+        }
+    }
+
+    /**
+     * Forget every file in {@code project} which isn't among {@code files}, as after a full
+     * build, {@code files} are all that it has to lint.
+     */
+    public synchronized void retainOnly(IProject project, List<IFile> files) {
+        ensureLoaded();
+        Set<String> keep = new HashSet<String>();
+        for (IFile f : files) {
+            keep.add(f.getFullPath().toString());
+        }
+        String prefix = project.getFullPath().toString() + "/";
+        for (Iterator<String> it = entries.keySet().iterator(); it.hasNext();) {
+            String path = it.next();
+            if (path.startsWith(prefix) && !keep.contains(path)) {
+                it.remove();
+            }
+        }
+    }
+
+    /** How many files are currently held. */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /** Forget everything, including the saved copy. */
+    public synchronized void clear() {
+        entries.clear();
+        loaded = true;
+        file.delete();
+    }
+
+    /**
+     * Write the snapshot out to disk. Does nothing if it was never used. Settings and reasons
+     * are repeated many times over, so each is written once, and referred to by number.
+     */
+    public synchronized void save() {
+        if (!loaded) {
+            return;
+        }
+        Map<String, Integer> strings = new HashMap<String, Integer>();
+        List<String> table = new ArrayList<String>();
+        for (Entry entry : entries.values()) {
+            number(entry.settings, strings, table);
+            for (String reason : entry.reasons) {
+                number(reason, strings, table);
+            }
+        }
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(file)));
+            try {
+                out.writeInt(VERSION);
+                out.writeInt(table.size());
+                for (String s : table) {
+                    out.writeUTF(s);
+                }
+                out.writeInt(entries.size());
+                for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                    Entry entry = e.getValue();
+                    out.writeUTF(e.getKey());
+                    out.writeLong(entry.localTimeStamp);
+                    out.writeLong(entry.modificationStamp);
+                    out.writeUTF(entry.digest);
+                    out.writeInt(strings.get(entry.settings));
+                    out.writeInt(entry.reasons.length);
+                    for (int i = 0; i < entry.reasons.length; i++) {
+                        out.writeInt(entry.positions[2 * i]);
+                        out.writeInt(entry.positions[2 * i + 1]);
+                        out.writeInt(strings.get(entry.reasons[i]));
+                    }
+                }
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            JSLintLog.error("Unable to save the marker snapshot to " + file, e);
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(file)));
+            try {
+                if (in.readInt() != VERSION) {
+                    return;
+                }
+                String[] table = new String[in.readInt()];
+                for (int i = 0; i < table.length; i++) {
+                    table[i] = in.readUTF();
+                }
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    String path = in.readUTF();
+                    long localTimeStamp = in.readLong();
+                    long modificationStamp = in.readLong();
+                    String digest = in.readUTF();
+                    String settings = table[in.readInt()];
+                    int issueCount = in.readInt();
+                    int[] positions = new int[2 * issueCount];
+                    String[] reasons = new String[issueCount];
+                    for (int j = 0; j < issueCount; j++) {
+                        positions[2 * j] = in.readInt();
+                        positions[2 * j + 1] = in.readInt();
+                        reasons[j] = table[in.readInt()];
+                    }
+                    entries.put(path, new Entry(localTimeStamp, modificationStamp, digest,
+                            settings, positions, reasons));
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            // Not fatal; the next full build will just have to read everything.
+            JSLintLog.error("Unable to read the marker snapshot from " + file, e);
+            entries.clear();
+        } catch (ArrayIndexOutOfBoundsException e) {
+            JSLintLog.error("Corrupt marker snapshot in " + file, e);
+            entries.clear();
+        }
+    }
+
+    private static void number(String s, Map<String, Integer> strings, List<String> table) {
+        if (!strings.containsKey(s)) {
+            strings.put(s, table.size());
+            table.add(s);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.googlecode.jslint4java.eclipse.builder;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Count how much JavaScript we've read for linting, and how much memory was allocated doing so.
+ * These are cumulative across all projects since the plugin started, or since
+ * {@link LintMetrics#reset()}.
+ * <p>
+ * Allocation is measured using {@code com.sun.management.ThreadMXBean}, so it's only available
+ * on JVMs which provide that.
+ */
+public class ReadCounters {
+
+    private static final double MEGABYTE = 1024 * 1024;
+
+    private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+    /** {@code com.sun.management.ThreadMXBean.getThreadAllocatedBytes(long)}, if we have it. */
+    private static final Method getThreadAllocatedBytes = findGetThreadAllocatedBytes();
+
+    private final AtomicLong filesRead = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong bytesAllocated = new AtomicLong();
+
+    /** How many files have been read. */
+    public long getFilesRead() {
+        return filesRead.get();
+    }
+
+    /** How many bytes have been read. */
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    /** How many bytes were allocated while reading and decoding, or -1 if we can't tell. */
+    public long getBytesAllocated() {
+        return getThreadAllocatedBytes == null ? -1 : bytesAllocated.get();
+    }
+
+    /**
+     * How many bytes were allocated while reading and decoding each megabyte of JavaScript, or -1
+     * if we can't tell.
+     */
+    public long getBytesAllocatedPerMegabyte() {
+        long read = bytesRead.get();
+        if (getThreadAllocatedBytes == null || read == 0) {
+            return -1;
+        }
+        return (long) (bytesAllocated.get() / (read / MEGABYTE));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d files, %.1f MB read, %d bytes allocated per MB", getFilesRead(),
+                getBytesRead() / MEGABYTE, getBytesAllocatedPerMegabyte());
+    }
+
+    void read(int bytes, long allocatedBefore) {
+        filesRead.incrementAndGet();
+        bytesRead.addAndGet(bytes);
+        allocatedSince(allocatedBefore);
+    }
+
+    /** Start counting again from zero. */
+    void reset() {
+        filesRead.set(0);
+        bytesRead.set(0);
+        bytesAllocated.set(0);
+    }
+
+    void decoded(long allocatedBefore) {
+        allocatedSince(allocatedBefore);
+    }
+
+    private void allocatedSince(long allocatedBefore) {
+        if (allocatedBefore >= 0) {
+            bytesAllocated.addAndGet(allocatedBytes() - allocatedBefore);
+        }
+    }
+
+    /** How many bytes the current thread has allocated so far, or -1 if we can't tell. */
+    static long allocatedBytes() {
+        if (getThreadAllocatedBytes == null) {
+            return -1;
+        }
+        try {
+            return (Long) getThreadAllocatedBytes.invoke(threadBean, Thread.currentThread()
+                    .getId());
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    private static Method findGetThreadAllocatedBytes() {
+        try {
+            // Look it up via the system class loader, as OSGi won't let us see com.sun.*.
+            Class<?> iface = Class.forName("com.sun.management.ThreadMXBean", true, ClassLoader
+                    .getSystemClassLoader());
+            if (iface.isInstance(threadBean)) {
+                return iface.getMethod("getThreadAllocatedBytes", long.class);
+            }
+        } catch (Exception e) {
+            // Not a JVM that supports it.
+        }
+        return null;
+    }
+}
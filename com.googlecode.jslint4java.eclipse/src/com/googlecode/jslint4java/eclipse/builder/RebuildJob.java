@@ -0,0 +1,285 @@
+package com.googlecode.jslint4java.eclipse.builder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceProxy;
+import org.eclipse.core.resources.IResourceProxyVisitor;
+import org.eclipse.core.resources.IncrementalProjectBuilder;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.SubProgressMonitor;
+import org.eclipse.core.runtime.jobs.Job;
+
+import com.googlecode.jslint4java.eclipse.JSLintLog;
+import com.googlecode.jslint4java.eclipse.JSLintPlugin;
+
+/**
+ * Re-lint projects in the background once their options have changed, so that their markers
+ * don't go stale. Only our own builder is run, and only on projects whose effective options are
+ * different from those they were last linted with. When just the exclusions change, only the
+ * files which became included or excluded are visited. When just the predefined names change,
+ * only the files which use the names added or removed are. Requests which arrive close together,
+ * such as a preference page storing several options, are coalesced into a single run.
+ * <p>
+ * Files whose content and options are unchanged come straight out of the result cache, so a
+ * rebuild mostly costs a walk of the project. Even so, we get out of the way of builds that the
+ * user asked for: any work left when one starts is put back and retried afterwards.
+ */
+class RebuildJob extends Job {
+
+    /** How long to wait for more requests before starting. */
+    private static final long DELAY_MILLIS = 500;
+
+    /** How long to wait before trying again after giving way to a user's build. */
+    private static final long YIELD_MILLIS = 2000;
+
+    private final JSLintProvider lintProvider;
+
+    /**
+     * The projects to re-lint, each mapped to the project relative paths of the only files to
+     * lint, or to null to lint the whole project.
+     */
+    private final Map<IProject, Set<String>> pending = new LinkedHashMap<IProject, Set<String>>();
+
+    /** The exclusions before and after changes not yet looked at, or null if there are none. */
+    private ExclusionMatcher exclusionsBefore;
+    private ExclusionMatcher exclusionsAfter;
+
+    RebuildJob(JSLintProvider lintProvider) {
+        super("Applying new JSLint options");
+        this.lintProvider = lintProvider;
+        setPriority(Job.BUILD);
+        setSystem(true);
+        // No rule of our own: each build takes just the rule its builder asks for.
+    }
+
+    /** Arrange for {@code project} to be re-linted, if its options have changed. */
+    void rebuild(IProject project) {
+        synchronized (pending) {
+            pending.put(project, null);
+        }
+        schedule(DELAY_MILLIS);
+    }
+
+    /** Arrange for every project with our nature to be re-linted, if its options have changed. */
+    void rebuildAll() {
+        for (IProject project : natureProjects()) {
+            rebuild(project);
+        }
+    }
+
+    /**
+     * Arrange for the files whose exclusion differs between {@code before} and {@code after} to
+     * be re-linted. The projects are walked by the job, not by the caller.
+     */
+    void exclusionsChanged(ExclusionMatcher before, ExclusionMatcher after) {
+        synchronized (pending) {
+            // If several changes pile up, only the first and last states matter.
+            if (exclusionsBefore == null) {
+                exclusionsBefore = before;
+            }
+            exclusionsAfter = after;
+        }
+        schedule(DELAY_MILLIS);
+    }
+
+    @Override
+    protected IStatus run(IProgressMonitor monitor) {
+        collectFlipped();
+        Map<IProject, Set<String>> work;
+        synchronized (pending) {
+            work = new LinkedHashMap<IProject, Set<String>>(pending);
+            pending.clear();
+        }
+        monitor.beginTask(getName(), work.size());
+        try {
+            Iterator<Map.Entry<IProject, Set<String>>> it = work.entrySet().iterator();
+            while (it.hasNext()) {
+                if (monitor.isCanceled()) {
+                    return Status.CANCEL_STATUS;
+                }
+                if (userBuildRunning()) {
+                    requeue(it);
+                    schedule(YIELD_MILLIS);
+                    return Status.OK_STATUS;
+                }
+                Map.Entry<IProject, Set<String>> entry = it.next();
+                rebuild(entry.getKey(), entry.getValue(), new SubProgressMonitor(monitor, 1));
+            }
+        } finally {
+            monitor.done();
+        }
+        return Status.OK_STATUS;
+    }
+
+    private void rebuild(IProject project, Set<String> paths, IProgressMonitor monitor) {
+        try {
+            if (!project.isOpen() || !project.hasNature(JSLintNature.NATURE_ID)) {
+                return;
+            }
+            if (paths == null) {
+                rebuildIfChanged(project, monitor);
+            } else {
+                lintOnly(project, paths, monitor);
+            }
+        } catch (CoreException e) {
+            JSLintLog.error(e);
+        }
+    }
+
+    /**
+     * Re-lint {@code project} if its options are different from those it was last linted with.
+     * If only the predefined names are different, just the files which use the names added or
+     * removed are re-linted, according to the {@link GlobalsIndex}.
+     */
+    private void rebuildIfChanged(IProject project, IProgressMonitor monitor)
+            throws CoreException {
+        String fingerprint = lintProvider.getOptionFingerprint(project);
+        if (fingerprint.equals(project.getPersistentProperty(JSLintBuilder.LINTED_WITH))) {
+            return;
+        }
+        String baseFingerprint = lintProvider.getBaseFingerprint(project);
+        Set<String> predef = lintProvider.getPredef(project);
+        GlobalsIndex index = JSLintPlugin.getDefault().getGlobalsIndex();
+        List<String> affected = index.affectedBy(project, baseFingerprint, predef);
+        if (affected == null) {
+            project.build(IncrementalProjectBuilder.FULL_BUILD, JSLintBuilder.BUILDER_ID, null,
+                    monitor);
+            return;
+        }
+        lintOnly(project, affected, monitor);
+        // Everything else is unaffected, so the project as a whole is now up to date.
+        index.linted(project, baseFingerprint, predef);
+        project.setPersistentProperty(JSLintBuilder.LINTED_WITH, fingerprint);
+    }
+
+    /** Re-lint just the files at the project relative {@code paths}. */
+    private void lintOnly(IProject project, Collection<String> paths, IProgressMonitor monitor)
+            throws CoreException {
+        if (paths.isEmpty()) {
+            monitor.done();
+            return;
+        }
+        Map<String, String> args = new HashMap<String, String>();
+        args.put(JSLintBuilder.LINT_FILES_ARG, join(paths));
+        project.build(IncrementalProjectBuilder.FULL_BUILD, JSLintBuilder.BUILDER_ID, args,
+                monitor);
+    }
+
+    /** Turn any pending change of exclusions into the files which need re-linting. */
+    private void collectFlipped() {
+        ExclusionMatcher before;
+        ExclusionMatcher after;
+        synchronized (pending) {
+            before = exclusionsBefore;
+            after = exclusionsAfter;
+            exclusionsBefore = null;
+            exclusionsAfter = null;
+        }
+        if (before == null) {
+            return;
+        }
+        for (IProject project : natureProjects()) {
+            Set<String> paths = flipped(project, before, after);
+            if (!paths.isEmpty()) {
+                synchronized (pending) {
+                    addPaths(project, paths);
+                }
+            }
+        }
+    }
+
+    /** Put the remaining entries of {@code it} back, without overriding any newer requests. */
+    private void requeue(Iterator<Map.Entry<IProject, Set<String>>> it) {
+        synchronized (pending) {
+            while (it.hasNext()) {
+                Map.Entry<IProject, Set<String>> entry = it.next();
+                if (entry.getValue() == null) {
+                    pending.put(entry.getKey(), null);
+                } else {
+                    addPaths(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
+
+    /** Add {@code paths} to those pending for {@code project}. Callers must hold the lock. */
+    private void addPaths(IProject project, Set<String> paths) {
+        if (!pending.containsKey(project)) {
+            pending.put(project, new LinkedHashSet<String>(paths));
+        } else if (pending.get(project) != null) {
+            pending.get(project).addAll(paths);
+        }
+        // Otherwise the whole project is already pending.
+    }
+
+    /** Is there a build going on that the user asked for? */
+    private boolean userBuildRunning() {
+        return Job.getJobManager().find(ResourcesPlugin.FAMILY_MANUAL_BUILD).length > 0;
+    }
+
+    /** Return the project relative paths of the JavaScript files whose exclusion differs. */
+    private Set<String> flipped(IProject project, final ExclusionMatcher before,
+            final ExclusionMatcher after) {
+        final Set<String> paths = new LinkedHashSet<String>();
+        try {
+            project.accept(new IResourceProxyVisitor() {
+                public boolean visit(IResourceProxy proxy) {
+                    if (proxy.isDerived()) {
+                        return false;
+                    }
+                    if (proxy.getType() == IResource.FILE && proxy.getName().endsWith(".js")) {
+                        IPath path = proxy.requestFullPath();
+                        String full = path.toString();
+                        if (before.isExcluded(full) != after.isExcluded(full)) {
+                            paths.add(path.removeFirstSegments(1).toString());
+                        }
+                    }
+                    return true;
+                }
+            }, IResource.NONE);
+        } catch (CoreException e) {
+            JSLintLog.error(e);
+        }
+        return paths;
+    }
+
+    private static List<IProject> natureProjects() {
+        List<IProject> projects = new ArrayList<IProject>();
+        for (IProject project : ResourcesPlugin.getWorkspace().getRoot().getProjects()) {
+            try {
+                if (project.isOpen() && project.hasNature(JSLintNature.NATURE_ID)) {
+                    projects.add(project);
+                }
+            } catch (CoreException e) {
+                JSLintLog.error(e);
+            }
+        }
+        return projects;
+    }
+
+    private static String join(Collection<String> paths) {
+        StringBuilder sb = new StringBuilder();
+        for (String path : paths) {
+            if (sb.length() > 0) {
+                sb.append('\n');
+            }
+            sb.append(path);
+        }
+        return sb.toString();
+    }
+}
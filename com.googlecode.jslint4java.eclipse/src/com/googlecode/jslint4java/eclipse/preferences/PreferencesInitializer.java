@@ -9,6 +9,14 @@ import org.eclipse.core.runtime.preferences.IEclipsePreferences;
 
 import com.googlecode.jslint4java.Option;
 import com.googlecode.jslint4java.eclipse.JSLintPlugin;
+import com.googlecode.jslint4java.eclipse.builder.ChunkedLint;
+import com.googlecode.jslint4java.eclipse.builder.JSLintBuilder;
+import com.googlecode.jslint4java.eclipse.builder.JSLintProvider;
+import com.googlecode.jslint4java.eclipse.builder.LintEngines;
+import com.googlecode.jslint4java.eclipse.builder.LintMetrics;
+import com.googlecode.jslint4java.eclipse.builder.LintPreFilter;
+import com.googlecode.jslint4java.eclipse.builder.LintResultCache;
+import com.googlecode.jslint4java.eclipse.builder.LintWatchdog;
 
 /**
  * Set up the default preferences. By default,we enable:
@@ -23,11 +31,27 @@ import com.googlecode.jslint4java.eclipse.JSLintPlugin;
  * <li> {@link Option#INDENT}
  * <li> {@link Option#MAXERR}
  * </ul>
+ * <p>
+ * Our own preferences default to:
+ * <ul>
+ * <li> Linting with JSLint itself.
+ * <li> Linting with one thread per available processor.
+ * <li> Preparing that many instances of JSLint when the plugin starts.
+ * <li> Caching up to {@link LintResultCache#DEFAULT_SIZE} lint results.
+ * <li> Updating markers for 100 files at a time.
+ * <li> Linting every file, however large, and whether or not it looks minified.
+ * <li> Giving up on a file after 10 seconds.
+ * <li> Linting files of 5000 lines or more a chunk at a time.
+ * <li> Not writing build metrics to disk.
+ * </ul>
  */
 public class PreferencesInitializer extends AbstractPreferenceInitializer {
 
     private static final int DEFAULT_INDENT = 4;
     private static final int DEFAULT_MAXERR = 50;
+    private static final int DEFAULT_MARKER_CHUNK_SIZE = 100;
+    private static final int DEFAULT_LINT_TIMEOUT_MS = 10000;
+    private static final int DEFAULT_CHUNKED_LINT_LINES = 5000;
 
     private final Set<Option> defaultEnable = EnumSet.of(Option.EQEQ, Option.UNDEF, Option.WHITE);
 
@@ -40,6 +64,17 @@ public class PreferencesInitializer extends AbstractPreferenceInitializer {
         // Hand code these.
         node.putInt(Option.INDENT.getLowerName(), DEFAULT_INDENT);
         node.putInt(Option.MAXERR.getLowerName(), DEFAULT_MAXERR);
+        node.put(LintEngines.LINT_ENGINE_PREFERENCE, LintEngines.DEFAULT_ENGINE);
+        node.putInt(JSLintBuilder.LINT_THREADS_PREFERENCE, Runtime.getRuntime()
+                .availableProcessors());
+        node.putInt(JSLintBuilder.MARKER_CHUNK_SIZE_PREFERENCE, DEFAULT_MARKER_CHUNK_SIZE);
+        node.putBoolean(JSLintProvider.PREWARM_PREFERENCE, true);
+        node.putInt(LintResultCache.RESULT_CACHE_SIZE_PREFERENCE, LintResultCache.DEFAULT_SIZE);
+        node.putInt(LintPreFilter.MAX_FILE_SIZE_PREFERENCE, 0);
+        node.putBoolean(LintPreFilter.SKIP_MINIFIED_PREFERENCE, false);
+        node.putInt(LintWatchdog.LINT_TIMEOUT_PREFERENCE, DEFAULT_LINT_TIMEOUT_MS);
+        node.putInt(ChunkedLint.CHUNKED_LINT_LINES_PREFERENCE, DEFAULT_CHUNKED_LINT_LINES);
+        node.putBoolean(LintMetrics.METRICS_DUMP_PREFERENCE, false);
     }
 
 }
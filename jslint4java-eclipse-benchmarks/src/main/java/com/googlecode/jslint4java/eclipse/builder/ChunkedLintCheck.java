@@ -0,0 +1,250 @@
+package com.googlecode.jslint4java.eclipse.builder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+
+import com.googlecode.jslint4java.Issue;
+import com.googlecode.jslint4java.JSLintResult;
+import com.googlecode.jslint4java.Option;
+
+/**
+ * Check that {@link ChunkedLint} finds what linting the whole file does. Not a benchmark: it
+ * generates large files full of the things the chunker has to get right (directives, multi-line
+ * statements, braces in strings, comments and regular expressions, top level blocks), makes a
+ * few random edits to each a number of times over, and lints every version both ways with the
+ * same {@link ChunkedLint}, so that edits are linted against chunks cached from earlier
+ * versions, as they are in the editor. Run it from the shaded jar:
+ *
+ * <pre>
+ * java -cp jslint4java-eclipse-benchmarks/target/benchmarks.jar \
+ *     com.googlecode.jslint4java.eclipse.builder.ChunkedLintCheck [files] [edits] [seed]
+ * </pre>
+ *
+ * It prints the first few differences, and exits with 1 if there were any.
+ */
+public final class ChunkedLintCheck {
+
+    /** Lint chunks directly, as there's no platform to hold them to a timeout. */
+    private static class UnwatchedChunkedLint extends ChunkedLint {
+        @Override
+        JSLintResult lintText(LintEngine lint, String systemId, String text,
+                IProgressMonitor monitor) {
+            return lint.lint(systemId, text);
+        }
+    }
+
+    /** Lint files of at least this many lines in chunks, so that every file is chunked. */
+    private static final int MIN_LINES = 2 * ChunkedLint.CHUNK_LINES;
+
+    /** How many differences to print before just counting them. */
+    private static final int MAX_REPORTED = 10;
+
+    private static final String SYSTEM_ID = "/project/chunked.js";
+
+    private final Random random;
+    private final ChunkedLint chunkedLint = new UnwatchedChunkedLint();
+    private int versions;
+    private int chunked;
+    private int differences;
+
+    private ChunkedLintCheck(long seed) {
+        random = new Random(seed);
+    }
+
+    public static void main(String[] args) {
+        int files = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int edits = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 20130101L;
+        ChunkedLintCheck check = new ChunkedLintCheck(seed);
+        check.run(files, edits);
+        System.out.printf("%d versions linted, %d of them in chunks, %d differences%n",
+                check.versions, check.chunked, check.differences);
+        System.exit(check.differences == 0 ? 0 : 1);
+    }
+
+    private void run(int files, int edits) {
+        List<Map<Option, String>> optionSets = optionSets();
+        for (int i = 0; i < files; i++) {
+            Map<Option, String> options = optionSets.get(i % optionSets.size());
+            LintEngine lint = new JSLintEngineFactory().newEngine(options);
+            String fingerprint = options.toString();
+            List<String> original = generate(1000 + random.nextInt(2000));
+            compare(lint, fingerprint, options, join(original), i, 0);
+            for (int j = 1; j <= edits; j++) {
+                // Start over each time, as enough damage makes any file unfit to chunk.
+                List<String> lines = new ArrayList<String>(original);
+                for (int k = random.nextInt(3); k >= 0; k--) {
+                    edit(lines);
+                }
+                compare(lint, fingerprint, options, join(lines), i, j);
+            }
+        }
+    }
+
+    private void compare(LintEngine lint, String fingerprint, Map<Option, String> options,
+            String source, int file, int edit) {
+        versions++;
+        JSLintResult pieces = chunkedLint.lint(lint, fingerprint, options, SYSTEM_ID, source,
+                MIN_LINES, null);
+        if (pieces == null) {
+            return;
+        }
+        chunked++;
+        List<String> expected = describe(lint.lint(SYSTEM_ID, source).getIssues());
+        List<String> actual = describe(pieces.getIssues());
+        if (expected.equals(actual)) {
+            return;
+        }
+        differences++;
+        if (differences > MAX_REPORTED) {
+            return;
+        }
+        System.out.printf("File %d, edit %d:%n", file, edit);
+        for (String issue : expected) {
+            if (!actual.contains(issue)) {
+                System.out.println("  only in whole file: " + issue);
+            }
+        }
+        for (String issue : actual) {
+            if (!expected.contains(issue)) {
+                System.out.println("  only in chunks:     " + issue);
+            }
+        }
+    }
+
+    private static List<String> describe(List<Issue> issues) {
+        List<String> descriptions = new ArrayList<String>(issues.size());
+        for (Issue issue : issues) {
+            descriptions.add(issue.getLine() + ":" + issue.getCharacter() + ": "
+                    + issue.getReason() + " [" + issue.getEvidence() + "]");
+        }
+        return descriptions;
+    }
+
+    /** The default options, and some which change what JSLint allows of top level code. */
+    private static List<Map<Option, String>> optionSets() {
+        Map<Option, String> sloppy = new EnumMap<Option, String>(
+                JSLintProviderBenchmark.defaultOptions());
+        sloppy.remove(Option.WHITE);
+        sloppy.put(Option.SLOPPY, "true");
+        sloppy.put(Option.VARS, "true");
+        Map<Option, String> browser = new EnumMap<Option, String>(
+                JSLintProviderBenchmark.defaultOptions());
+        browser.put(Option.BROWSER, "true");
+        browser.put(Option.MAXERR, "500");
+        return Arrays.asList(JSLintProviderBenchmark.defaultOptions(), sloppy, browser);
+    }
+
+    /** Return roughly {@code lineCount} lines of JavaScript, a top level statement at a time. */
+    private List<String> generate(int lineCount) {
+        List<String> lines = new ArrayList<String>(lineCount + 20);
+        lines.add("/*global window, document */");
+        for (int n = 0; lines.size() < lineCount; n++) {
+            lines.addAll(statement(n));
+        }
+        return lines;
+    }
+
+    /** Return the lines of a top level statement, numbered {@code n} to keep names unique. */
+    private List<String> statement(int n) {
+        List<String> lines = new ArrayList<String>();
+        // Roughly one statement in eight has something for JSLint to complain about.
+        boolean sloppy = random.nextInt(8) == 0;
+        switch (random.nextInt(10)) {
+        case 0:
+            lines.add("var count" + n + " = 0, name" + n + " = \"{ not a block;\",");
+            lines.add("    pattern" + n + " = /[}\\/]+;/g;");
+            break;
+        case 1:
+            lines.add("var settings" + n + " = {");
+            lines.add("    width: " + random.nextInt(1000) + ",");
+            lines.add("    label: '}' + \"/* not a comment */\"");
+            lines.add("}" + (sloppy ? "" : ";"));
+            break;
+        case 2:
+            lines.add("/* A comment with a brace { and a 'quote */");
+            lines.add("if (window.ready" + n + ") {");
+            lines.add("    window.ready" + n + "(" + (sloppy ? "undeclared" + n : "1") + ");");
+            lines.add("}");
+            break;
+        case 3:
+            lines.add("window.chain" + n + " = [1, 2, 3]");
+            lines.add("    .concat([" + random.nextInt(10) + "])");
+            lines.add("    .join(\",\");");
+            break;
+        case 4:
+            lines.add("/*jslint " + (random.nextBoolean() ? "plusplus: true" : "nomen: true")
+                    + " */");
+            lines.add("/*global extra" + n + " */");
+            lines.add("extra" + n + " = " + n + ";");
+            break;
+        case 5:
+            lines.add("function later" + n + "(callback) {");
+            lines.add("    \"use strict\";");
+            lines.add("    return callback && callback(" + n + ")" + (sloppy ? "" : ";"));
+            lines.add("}");
+            break;
+        default:
+            lines.add("function compute" + n + "(items, target) {");
+            lines.add("    \"use strict\";");
+            lines.add("    var total = 0, i;");
+            lines.add("    for (i = 0; i < items.length; i += 1) {");
+            lines.add("        if (items[i] " + (sloppy ? "==" : "===") + " target) {");
+            lines.add("            total += i * " + random.nextInt(1000) + ";");
+            lines.add("        }");
+            lines.add("    }");
+            lines.add("    return total;");
+            lines.add("}");
+            break;
+        }
+        return lines;
+    }
+
+    /**
+     * Make the kind of change someone typing might: add, remove, or damage some lines, or use a
+     * global without declaring it.
+     */
+    private void edit(List<String> lines) {
+        int at = random.nextInt(lines.size());
+        switch (random.nextInt(8)) {
+        case 0:
+            lines.addAll(at, statement(100000 + random.nextInt(100000)));
+            break;
+        case 1:
+            lines.remove(at);
+            break;
+        case 2:
+            lines.add(at, lines.get(random.nextInt(lines.size())));
+            break;
+        case 3:
+            String line = lines.get(at);
+            int col = random.nextInt(line.length() + 1);
+            String typed = String.valueOf("{}()\"';/*=,x".charAt(random.nextInt(12)));
+            lines.set(at, line.substring(0, col) + typed + line.substring(col));
+            break;
+        case 4:
+            lines.set(at, lines.get(at).replace(";", ""));
+            break;
+        case 5:
+            lines.add(at, "\"use strict\";");
+            break;
+        default:
+            lines.add(at, "shared" + random.nextInt(5) + " = " + at + ";");
+            break;
+        }
+    }
+
+    private static String join(List<String> lines) {
+        StringBuilder sb = new StringBuilder();
+        for (String line : lines) {
+            sb.append(line).append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,172 @@
+package com.googlecode.jslint4java.eclipse.builder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.Path;
+
+/**
+ * Generate the JavaScript and workspace paths that the benchmarks work on. Everything comes from
+ * a fixed seed, so runs are reproducible without any files being checked in or downloaded.
+ */
+final class Corpus {
+
+    /** The sizes of input we lint. */
+    enum Size {
+        /** A couple of kilobytes; a typical hand written module. */
+        SMALL(2 * 1024, false),
+        /** About 64 KB; a large hand written file. */
+        MEDIUM(64 * 1024, false),
+        /** About 128 KB on a single line, as a minifier would produce. */
+        MINIFIED(128 * 1024, true);
+
+        private final int length;
+        private final boolean minified;
+
+        Size(int length, boolean minified) {
+            this.length = length;
+            this.minified = minified;
+        }
+    }
+
+    private static final long SEED = 20130101L;
+
+    private static final String[] DIRECTORIES = { "src", "lib", "test", "node_modules",
+            "vendor", "build", "assets/js", "src/main/webapp/js" };
+
+    private Corpus() {
+    }
+
+    /** Return JavaScript of roughly {@code size}. A few functions have things to complain about. */
+    static String javaScript(Size size) {
+        Random random = new Random(SEED + size.ordinal());
+        StringBuilder sb = new StringBuilder(size.length + 1024);
+        if (!size.minified) {
+            sb.append("/*global window, document */\n");
+        }
+        for (int n = 0; sb.length() < size.length; n++) {
+            if (size.minified) {
+                appendMinifiedFunction(sb, n);
+            } else {
+                appendFunction(sb, n, random);
+            }
+        }
+        return sb.toString();
+    }
+
+    /** Return {@code count} workspace paths, spread over some typical directories. */
+    static List<String> paths(int count) {
+        Random random = new Random(SEED);
+        List<String> paths = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            String dir = DIRECTORIES[random.nextInt(DIRECTORIES.length)];
+            paths.add(String.format("/project%d/%s/module%d/file%d.js", random.nextInt(4), dir,
+                    random.nextInt(50), i));
+        }
+        return paths;
+    }
+
+    /**
+     * Return {@code count} exclusion patterns, a mix of the regexes people have always written and
+     * the globs they can write now. Only a few of them match anything in {@link #paths(int)}.
+     */
+    static List<String> exclusionPatterns(int count) {
+        List<String> patterns = new ArrayList<String>(count);
+        patterns.add("glob:**/node_modules/**");
+        patterns.add("glob:/project1/vendor/**");
+        patterns.add("\\.min\\.js$");
+        patterns.add("/build/");
+        for (int i = 0; patterns.size() < count; i++) {
+            switch (i % 4) {
+            case 0:
+                patterns.add("/generated" + i + "/");
+                break;
+            case 1:
+                patterns.add("glob:/project" + i + "/third_party/**");
+                break;
+            case 2:
+                patterns.add("module" + (100 + i) + "/.*_test\\.js$");
+                break;
+            default:
+                patterns.add("glob:**/fixtures" + i + "/*.js");
+                break;
+            }
+        }
+        return patterns;
+    }
+
+    /** Write {@code contents} to {@code name} in {@code dir}, as UTF-8. */
+    static File write(File dir, String name, String contents) throws IOException {
+        File file = new File(dir, name);
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(contents.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    /**
+     * Return an {@link IFile} for {@code file}, with just enough implemented for
+     * {@link ContentReader} and {@link LintPreFilter}.
+     */
+    static IFile workspaceFile(final File file) {
+        InvocationHandler handler = new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String name = method.getName();
+                if (name.equals("getLocation")) {
+                    return new Path(file.getAbsolutePath());
+                } else if (name.equals("getFullPath")) {
+                    return new Path("/project/" + file.getName());
+                } else if (name.equals("getName")) {
+                    return file.getName();
+                } else if (name.equals("getCharset")) {
+                    return "UTF-8";
+                } else if (name.equals("hashCode")) {
+                    return System.identityHashCode(proxy);
+                } else if (name.equals("equals")) {
+                    return proxy == args[0];
+                } else if (name.equals("toString")) {
+                    return file.toString();
+                }
+                throw new UnsupportedOperationException(name);
+            }
+        };
+        return (IFile) Proxy.newProxyInstance(Corpus.class.getClassLoader(),
+                new Class<?>[] { IFile.class }, handler);
+    }
+
+    private static void appendFunction(StringBuilder sb, int n, Random random) {
+        // Roughly one function in ten has something for JSLint to complain about.
+        boolean sloppy = random.nextInt(10) == 0;
+        sb.append("function compute").append(n).append("(items, target) {\n");
+        sb.append("    \"use strict\";\n");
+        sb.append("    var total = 0, i;\n");
+        sb.append("    for (i = 0; i < items.length; i += 1) {\n");
+        sb.append("        if (items[i] ").append(sloppy ? "==" : "===").append(" target) {\n");
+        sb.append("            total += i * ").append(random.nextInt(1000)).append(";\n");
+        sb.append("        }\n");
+        sb.append("    }\n");
+        if (random.nextBoolean()) {
+            sb.append("    window.status = \"computed ").append(n).append("\";\n");
+        }
+        sb.append("    return total").append(sloppy ? "" : ";").append("\n");
+        sb.append("}\n\n");
+    }
+
+    private static void appendMinifiedFunction(StringBuilder sb, int n) {
+        sb.append("function c").append(n).append("(a,b){\"use strict\";var t=0,i;")
+                .append("for(i=0;i<a.length;i+=1){if(a[i]===b){t+=i*").append(n % 997)
+                .append(";}}return t;}");
+    }
+}
@@ -0,0 +1,71 @@
+package com.googlecode.jslint4java.eclipse.builder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Check a build's worth of paths against an exclusion list, both as {@link Excluder} does now
+ * and by trying each regex in turn, as it used to.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ExclusionBenchmark {
+
+    private static final int PATHS = 10000;
+
+    @Param({ "10", "40", "200" })
+    public int patterns;
+
+    private List<String> paths;
+    private ExclusionMatcher matcher;
+    private List<Pattern> regexes;
+
+    @Setup
+    public void setUp() {
+        paths = Corpus.paths(PATHS);
+        matcher = new ExclusionMatcher(Corpus.exclusionPatterns(patterns));
+        regexes = matcher.toRegexes();
+    }
+
+    @Benchmark
+    public int matcher() {
+        int excluded = 0;
+        for (String path : paths) {
+            if (matcher.isExcluded(path)) {
+                excluded++;
+            }
+        }
+        return excluded;
+    }
+
+    @Benchmark
+    public int eachRegex() {
+        int excluded = 0;
+        for (String path : paths) {
+            for (Pattern p : regexes) {
+                if (p.matcher(path).find()) {
+                    excluded++;
+                    break;
+                }
+            }
+        }
+        return excluded;
+    }
+}
@@ -0,0 +1,78 @@
+package com.googlecode.jslint4java.eclipse.builder;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.googlecode.jslint4java.JSLint;
+import com.googlecode.jslint4java.JSLintBuilder;
+import com.googlecode.jslint4java.Option;
+
+/**
+ * What it costs {@link JSLintProvider} to create and configure an instance of JSLint, i.e. what
+ * a build pays when the pool is empty. {@link #createInstance()} is what it cost before the
+ * {@link JSLintScript} kept a compiled copy of the script.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class JSLintProviderBenchmark {
+
+    private final JSLintBuilder builder = new JSLintBuilder();
+    private final JSLintScript script = new JSLintScript(null);
+    private final Map<Option, String> options = defaultOptions();
+    private JSLint lint;
+
+    @Setup
+    public void setUp() {
+        lint = builder.fromDefault();
+    }
+
+    @Benchmark
+    public JSLint createInstance() {
+        return builder.fromDefault();
+    }
+
+    @Benchmark
+    public JSLint createFromScript() {
+        return script.newJSLint();
+    }
+
+    @Benchmark
+    public JSLint configure() {
+        JSLintProvider.configure(lint, options);
+        return lint;
+    }
+
+    /** The options which are set by default, as PreferencesInitializer sets them. */
+    static Map<Option, String> defaultOptions() {
+        Map<Option, String> options = new EnumMap<Option, String>(Option.class);
+        options.put(Option.EQEQ, "true");
+        options.put(Option.UNDEF, "true");
+        options.put(Option.WHITE, "true");
+        options.put(Option.INDENT, "4");
+        options.put(Option.MAXERR, "50");
+        return options;
+    }
+
+    /** Return an instance configured with {@link #defaultOptions()}. */
+    static JSLint newConfigured() {
+        JSLint lint = new JSLintBuilder().fromDefault();
+        JSLintProvider.configure(lint, defaultOptions());
+        return lint;
+    }
+}
@@ -0,0 +1,59 @@
+package com.googlecode.jslint4java.eclipse.builder;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.googlecode.jslint4java.JSLint;
+import com.googlecode.jslint4java.JSLintResult;
+
+/**
+ * Lint each size of input with a warm, configured instance. This is the number to watch when
+ * upgrading the bundled jslint4java. {@link #fastLint()} is the same with the
+ * {@link FastLintEngine}, for comparison.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class LintBenchmark {
+
+    @Param({ "SMALL", "MEDIUM", "MINIFIED" })
+    public String input;
+
+    private Corpus.Size size;
+
+    private JSLint lint;
+    private LintEngine fast;
+    private String source;
+
+    @Setup
+    public void setUp() {
+        size = Corpus.Size.valueOf(input);
+        lint = JSLintProviderBenchmark.newConfigured();
+        fast = new FastLintEngineFactory().newEngine(JSLintProviderBenchmark.defaultOptions());
+        source = Corpus.javaScript(size);
+    }
+
+    @Benchmark
+    public JSLintResult lint() {
+        return lint.lint("/project/" + size.name().toLowerCase() + ".js", source);
+    }
+
+    @Benchmark
+    public JSLintResult fastLint() {
+        return fast.lint("/project/" + size.name().toLowerCase() + ".js", source);
+    }
+}
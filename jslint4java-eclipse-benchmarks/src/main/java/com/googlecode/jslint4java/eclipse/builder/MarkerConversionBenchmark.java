@@ -0,0 +1,50 @@
+package com.googlecode.jslint4java.eclipse.builder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.googlecode.jslint4java.Issue;
+
+/**
+ * Turn a file's issues into marker attributes, as {@link MarkerReconciler} does for each new
+ * marker. Creating the markers themselves needs a workspace; see <i>MarkerBenchmark</i> in the
+ * com.googlecode.jslint4java.eclipse.benchmarks fragment.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class MarkerConversionBenchmark {
+
+    private List<Issue> issues;
+
+    @Setup
+    public void setUp() {
+        issues = JSLintProviderBenchmark.newConfigured()
+                .lint("/project/medium.js", Corpus.javaScript(Corpus.Size.MEDIUM)).getIssues();
+        if (issues.isEmpty()) {
+            throw new IllegalStateException("the corpus should produce some issues");
+        }
+    }
+
+    @Benchmark
+    public void attributesFor(Blackhole blackhole) {
+        for (Issue issue : issues) {
+            blackhole.consume(MarkerReconciler.attributesFor(issue));
+        }
+    }
+}
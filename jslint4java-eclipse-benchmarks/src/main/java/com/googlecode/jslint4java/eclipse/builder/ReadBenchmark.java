@@ -0,0 +1,86 @@
+package com.googlecode.jslint4java.eclipse.builder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.CoreException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Read and decode a file as a lint worker does, including the digest used to look up cached
+ * results. For comparison, also read it through an {@link InputStreamReader}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ReadBenchmark {
+
+    @Param({ "SMALL", "MEDIUM", "MINIFIED" })
+    public String input;
+
+    private Corpus.Size size;
+
+    private File dir;
+    private File file;
+    private IFile workspaceFile;
+    private final ContentReader reader = new ContentReader(new ReadCounters());
+    private final char[] buf = new char[8192];
+
+    @Setup
+    public void setUp() throws IOException {
+        size = Corpus.Size.valueOf(input);
+        dir = File.createTempFile("jslint4java-bench", "");
+        dir.delete();
+        dir.mkdirs();
+        file = Corpus.write(dir, size.name().toLowerCase() + ".js", Corpus.javaScript(size));
+        workspaceFile = Corpus.workspaceFile(file);
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+        dir.delete();
+    }
+
+    @Benchmark
+    public String contentReader() throws CoreException, IOException {
+        ByteBuffer contents = reader.read(workspaceFile);
+        Digests.sha1(contents.duplicate());
+        return reader.decode(contents, workspaceFile.getCharset());
+    }
+
+    @Benchmark
+    public String inputStreamReader() throws IOException {
+        Reader in = new InputStreamReader(new FileInputStream(file), "UTF-8");
+        try {
+            StringBuilder sb = new StringBuilder();
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                sb.append(buf, 0, n);
+            }
+            return sb.toString();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.googlecode.jslint4java.eclipse.builder;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.googlecode.jslint4java.JSLint;
+import com.googlecode.jslint4java.JSLintResult;
+
+/**
+ * Files linted per second by instances from {@link JSLintScript} in each of its modes, with and
+ * without counting instructions for the {@link LintWatchdog}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class ScriptModeBenchmark {
+
+    @Param({ "COMPILED", "INTERPRETED" })
+    public String mode;
+
+    @Param({ "true", "false" })
+    public boolean countInstructions;
+
+    @Param({ "SMALL", "MEDIUM" })
+    public String input;
+
+    private JSLint lint;
+    private String source;
+    private String systemId;
+
+    @Setup
+    public void setUp() {
+        JSLintScript script = new JSLintScript(null, JSLintScript.Mode.valueOf(mode));
+        script.setCountInstructions(countInstructions);
+        lint = script.newJSLint();
+        JSLintProvider.configure(lint, JSLintProviderBenchmark.defaultOptions());
+        Corpus.Size size = Corpus.Size.valueOf(input);
+        source = Corpus.javaScript(size);
+        systemId = "/project/" + size.name().toLowerCase() + ".js";
+    }
+
+    @Benchmark
+    public JSLintResult lint() {
+        return lint.lint(systemId, source);
+    }
+}